@@ -6,18 +6,31 @@ create table if not exists users
     name          varchar(500),
     password      varchar(500)
 );
+create index if not exists idx_users_date_of_birth
+    on users (date_of_birth);
+-- text_pattern_ops lets the prefix LIKE of the user search use the index under any collation
+create index if not exists idx_users_name_pattern
+    on users (name text_pattern_ops);
+create index if not exists idx_users_name_ucs_basic
+    on users (name collate ucs_basic, id);
 create table if not exists account
 (
     id              bigint not null
         primary key,
     balance         numeric(38, 2),
     initial_balance numeric(38, 2),
+    version         bigint not null default 0,
+    last_accrued_at timestamp(6) with time zone default now(),
+    saturated       boolean not null default false,
     user_id         bigint
         constraint ukh6dr47em6vg85yuwt4e2roca4
             unique
         constraint fkra7xoi9wtlcq07tmoxxe5jrh4
             references users
 );
+create index if not exists idx_account_unsaturated
+    on account (id)
+    where not saturated;
 create table if not exists email_data
 (
     id      bigint generated by default as identity
@@ -29,6 +42,8 @@ create table if not exists email_data
         constraint fk62aitajoe5fk8s6a7b0830qjd
             references users
 );
+create index if not exists idx_email_data_user_id
+    on email_data (user_id);
 create table if not exists phone_data
 (
     id      bigint generated by default as identity
@@ -40,3 +55,68 @@ create table if not exists phone_data
         constraint fkddj6vjnjncixxkhhjee7dyc2h
             references users
 );
+create index if not exists idx_phone_data_user_id
+    on phone_data (user_id);
+create sequence if not exists transfer_journal_seq start with 1 increment by 50;
+create table if not exists transfer_journal
+(
+    id                      bigint         not null
+        primary key,
+    account_id              bigint         not null,
+    counterparty_account_id bigint,
+    amount                  numeric(38, 2) not null,
+    entry_type              varchar(20)    not null,
+    created_at              timestamp(6) with time zone not null
+);
+create index if not exists idx_transfer_journal_account_created
+    on transfer_journal (account_id, created_at);
+create table if not exists balance_snapshot
+(
+    account_id bigint not null
+        primary key,
+    balance    numeric(38, 2),
+    as_of      timestamp(6) with time zone
+);
+create table if not exists account_stripe
+(
+    id         bigint generated by default as identity
+        primary key,
+    account_id bigint  not null,
+    stripe_no  integer not null,
+    balance    numeric(38, 2),
+    constraint uk_account_stripe
+        unique (account_id, stripe_no)
+);
+create table if not exists accrual_lease
+(
+    partition_no integer not null
+        primary key,
+    last_tick    bigint  not null,
+    holder       varchar(255),
+    claimed_at   timestamp(6) with time zone
+);
+create table if not exists async_transfer
+(
+    id          uuid           not null
+        primary key,
+    user_id     bigint         not null,
+    transfer_to bigint         not null,
+    amount      numeric(38, 2) not null,
+    status      varchar(20)    not null,
+    message     varchar(500),
+    updated_at  timestamp(6) with time zone not null
+);
+create index if not exists idx_async_transfer_status_updated
+    on async_transfer (status, updated_at);
+create table if not exists idempotency_record
+(
+    scope           varchar(100) not null,
+    idempotency_key varchar(255) not null,
+    fingerprint     varchar(255) not null,
+    status          integer      not null,
+    body            text,
+    created_at      timestamp(6) with time zone not null,
+    primary key (scope, idempotency_key)
+);
+create index if not exists idx_idempotency_record_created
+    on idempotency_record (created_at);
@@ -3,22 +3,43 @@ package by.bank.api;
 import by.bank.config.JwtFilter;
 import by.bank.dto.AddEmailDto;
 import by.bank.dto.AddPhoneDto;
+import by.bank.dto.AsyncTransferDto;
+import by.bank.dto.CachedUserPage;
+import by.bank.dto.BatchTransferDto;
+import by.bank.dto.IdempotentResponse;
+import by.bank.dto.TransferResultDto;
+import by.bank.dto.UserSearchQuery;
+import by.bank.dto.UserSearchResultDto;
+import by.bank.dto.UserSortOrder;
 import by.bank.dto.entityDto.EmailDataDto;
 import by.bank.dto.entityDto.PhoneDataDto;
 import by.bank.dto.TransferDto;
 import by.bank.dto.entityDto.UserDto;
 import by.bank.service.AccountService;
+import by.bank.service.AsyncTransferService;
 import by.bank.service.UserService;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.security.auth.login.AccountNotFoundException;
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
 
 
 @RestController
@@ -26,14 +47,72 @@ import java.util.List;
 public class UserController {
     private final UserService userService;
     private final AccountService accountService;
+    private final AsyncTransferService asyncTransferService;
     private final JwtFilter jwtFilter;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String HAS_NEXT_HEADER = "X-Has-Next";
+    @Value("${bank.search.response-cache:false}")
+    private boolean responseCache;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
 
 
+    /**
+     * Offset pagination by {@code page}, or keyset pagination once {@code after} is given: an empty {@code after}
+     * requests the first page, the cursor of the next page is returned in the {@code X-Next-Cursor} header.
+     * In both modes {@code X-Has-Next} tells whether another page follows.
+     * <p>
+     * With {@code bank.search.response-cache} on, pages are cached as the serialized response and carry an ETag.
+     */
     @GetMapping("/users")
-    public List<UserDto> getUsers(@RequestParam(required = false) LocalDate dateOfBirth, @RequestParam(required = false) String phone,
-                                  @RequestParam(required = false) String name, @RequestParam(required = false) String email, @RequestParam(defaultValue = "0") int page,
-                                  @RequestParam(defaultValue = "10") int size) {
-        return userService.searchUsers(dateOfBirth, phone, name, email, PageRequest.of(page, size));
+    public ResponseEntity<List<UserDto>> getUsers(@RequestParam(required = false) LocalDate dateOfBirth, @RequestParam(required = false) String phone,
+                                                  @RequestParam(required = false) String name, @RequestParam(required = false) String email, @RequestParam(defaultValue = "0") int page,
+                                                  @RequestParam(defaultValue = "10") int size, @RequestParam(required = false) String after,
+                                                  @RequestParam(defaultValue = "NAME") UserSortOrder orderBy, ServletWebRequest webRequest) throws IOException {
+        if (responseCache) {
+            writeCachedPage(userService.searchUsersJson(UserSearchQuery.of(dateOfBirth, phone, name, email, page, size, after, orderBy)), webRequest);
+            return null;
+        }
+        if (after == null) {
+            Slice<UserDto> slice = userService.searchUsers(dateOfBirth, phone, name, email, PageRequest.of(page, size));
+            return ResponseEntity.ok()
+                    .header(HAS_NEXT_HEADER, String.valueOf(slice.hasNext()))
+                    .body(slice.getContent());
+        }
+        UserSearchResultDto result = userService.searchUsersAfter(dateOfBirth, phone, name, email, orderBy, after, size);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HAS_NEXT_HEADER, String.valueOf(result.getNextCursor() != null));
+        if (result.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, result.getNextCursor());
+        }
+        return response.body(result.getUsers());
+    }
+
+    /**
+     * Writes a cached page to the response as is, bypassing the message converters, or answers 304 if the
+     * client's copy is current.
+     */
+    private void writeCachedPage(CachedUserPage cached, ServletWebRequest webRequest) throws IOException {
+        if (webRequest.checkNotModified(cached.getEtag())) {
+            return;
+        }
+        HttpServletResponse response = Objects.requireNonNull(webRequest.getResponse());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setHeader(HAS_NEXT_HEADER, String.valueOf(cached.isHasNext()));
+        if (cached.getNextCursor() != null) {
+            response.setHeader(NEXT_CURSOR_HEADER, cached.getNextCursor());
+        }
+        response.setContentLength(cached.getBody().length);
+        response.getOutputStream().write(cached.getBody());
+    }
+
+    /**
+     * Streams all users matching the filters as NDJSON in id order.
+     */
+    @GetMapping(value = "/users/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(required = false) LocalDate dateOfBirth, @RequestParam(required = false) String phone,
+                                                             @RequestParam(required = false) String name, @RequestParam(required = false) String email) {
+        StreamingResponseBody body = out -> userService.exportUsers(dateOfBirth, phone, name, email, out);
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
     }
 
     @PostMapping("/phone")
@@ -67,7 +146,29 @@ public class UserController {
     }
 
     @PostMapping("/transfer")
-    public void transfer(@Valid @RequestBody TransferDto transferDto, HttpServletRequest httpRequest) throws AccountNotFoundException {
-        accountService.transfer(transferDto, jwtFilter.extractTokenFromCookie(httpRequest));
+    public ResponseEntity<String> transfer(@Valid @RequestBody TransferDto transferDto, @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+                                           HttpServletRequest httpRequest) throws AccountNotFoundException {
+        String token = jwtFilter.extractTokenFromCookie(httpRequest);
+        if (!StringUtils.hasText(idempotencyKey)) {
+            accountService.transfer(transferDto, token);
+            return ResponseEntity.ok().build();
+        }
+        IdempotentResponse response = accountService.transfer(transferDto, token, idempotencyKey);
+        return ResponseEntity.status(response.getStatus()).body(response.getBody());
+    }
+
+    @PostMapping("/transfers/batch")
+    public List<TransferResultDto> transferBatch(@Valid @RequestBody BatchTransferDto batchTransferDto, HttpServletRequest httpRequest) throws AccountNotFoundException {
+        return accountService.transferBatch(batchTransferDto.getTransfers(), jwtFilter.extractTokenFromCookie(httpRequest));
+    }
+
+    @PostMapping("/transfers/async")
+    public ResponseEntity<AsyncTransferDto> transferAsync(@Valid @RequestBody TransferDto transferDto, HttpServletRequest httpRequest) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(asyncTransferService.submit(transferDto, jwtFilter.extractTokenFromCookie(httpRequest)));
+    }
+
+    @GetMapping("/transfers/{id}")
+    public AsyncTransferDto getTransfer(@PathVariable UUID id, HttpServletRequest httpRequest) {
+        return asyncTransferService.getTransfer(id, jwtFilter.extractTokenFromCookie(httpRequest));
     }
 }
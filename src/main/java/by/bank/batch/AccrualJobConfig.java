@@ -0,0 +1,107 @@
+package by.bank.batch;
+
+import by.bank.repository.AccountRepository;
+import by.bank.service.AccountService;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.database.JdbcPagingItemReader;
+import org.springframework.batch.item.database.Order;
+import org.springframework.batch.item.database.builder.JdbcPagingItemReaderBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interest accrual as a partitioned Spring Batch job. The account id range is split across
+ * {@code bank.interest.batch.threads} workers; each worker pages through its range by id and commits
+ * every {@code bank.interest.batch.chunk-size} accounts, so a failing chunk only rolls back itself and
+ * a restart of the failed run resumes after the last committed chunk of every partition.
+ */
+@Configuration
+public class AccrualJobConfig {
+    public static final String JOB_NAME = "balanceAccrualJob";
+
+    @Value("${bank.interest.batch.threads:4}")
+    private int threads;
+    @Value("${bank.interest.batch.chunk-size:500}")
+    private int chunkSize;
+
+    @Bean
+    public Job balanceAccrualJob(JobRepository jobRepository, Step accrualPartitionStep) {
+        return new JobBuilder(JOB_NAME, jobRepository)
+                .start(accrualPartitionStep)
+                .build();
+    }
+
+    @Bean
+    public Step accrualPartitionStep(JobRepository jobRepository, Step accrualWorkerStep, JdbcTemplate jdbcTemplate) {
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("accrual-");
+        taskExecutor.setConcurrencyLimit(threads);
+        return new StepBuilder("accrualPartitionStep", jobRepository)
+                .partitioner(accrualWorkerStep.getName(), new IdRangePartitioner(jdbcTemplate))
+                .step(accrualWorkerStep)
+                .gridSize(threads)
+                .taskExecutor(taskExecutor)
+                .listener(new StepMetricsListener())
+                .build();
+    }
+
+    @Bean
+    public Step accrualWorkerStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
+                                  JdbcPagingItemReader<Long> accrualReader, ItemWriter<Long> accrualWriter) {
+        return new StepBuilder("accrualWorkerStep", jobRepository)
+                .<Long, Long>chunk(chunkSize, transactionManager)
+                .reader(accrualReader)
+                .writer(accrualWriter)
+                .listener(new StepMetricsListener())
+                .faultTolerant()
+                .retry(ConcurrencyFailureException.class)
+                .retryLimit(3)
+                .build();
+    }
+
+    /**
+     * Reads the ids of unsaturated accounts within the partition's range, paging by id.
+     */
+    @Bean
+    @StepScope
+    public JdbcPagingItemReader<Long> accrualReader(DataSource dataSource,
+                                                    @Value("#{stepExecutionContext['minId']}") Long minId,
+                                                    @Value("#{stepExecutionContext['maxId']}") Long maxId) {
+        return new JdbcPagingItemReaderBuilder<Long>()
+                .name("accrualReader")
+                .dataSource(dataSource)
+                .selectClause("SELECT id")
+                .fromClause("FROM account")
+                .whereClause("WHERE id BETWEEN :minId AND :maxId AND NOT saturated")
+                .parameterValues(Map.of("minId", minId, "maxId", maxId))
+                .sortKeys(Map.of("id", Order.ASCENDING))
+                .rowMapper(new SingleColumnRowMapper<>(Long.class))
+                .pageSize(chunkSize)
+                .build();
+    }
+
+    /**
+     * Accrues a chunk with one statement that works on the locked rows, so balances changed by transfers
+     * since the page was read are accrued from their current value.
+     */
+    @Bean
+    public ItemWriter<Long> accrualWriter(AccountRepository accountRepository) {
+        return chunk -> accountRepository.accrueInterestForIds(List.copyOf(chunk.getItems()),
+                AccountService.MULTIPLIER, AccountService.MAX_PERCENTAGE);
+    }
+}
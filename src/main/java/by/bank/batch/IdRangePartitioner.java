@@ -0,0 +1,35 @@
+package by.bank.batch;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Splits the {@code account} id range into at most {@code gridSize} contiguous, non-overlapping ranges.
+ * Each partition carries its bounds as {@code minId}/{@code maxId} in the step execution context.
+ */
+@RequiredArgsConstructor
+public class IdRangePartitioner implements Partitioner {
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+        long[] bounds = jdbcTemplate.queryForObject("SELECT COALESCE(MIN(id), 0), COALESCE(MAX(id), -1) FROM account",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+        long minId = bounds[0];
+        long maxId = bounds[1];
+        long size = Math.max(1, (maxId - minId + gridSize) / gridSize);
+        for (long lower = minId; lower <= maxId; lower += size) {
+            ExecutionContext context = new ExecutionContext();
+            context.putLong("minId", lower);
+            context.putLong("maxId", Math.min(lower + size - 1, maxId));
+            partitions.put("partition" + partitions.size(), context);
+        }
+        return partitions;
+    }
+}
@@ -0,0 +1,27 @@
+package by.bank.batch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Logs the counters of every finished step. Timers for steps and chunks are additionally published
+ * by Spring Batch to the global Micrometer registry.
+ */
+@Slf4j
+public class StepMetricsListener implements StepExecutionListener {
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        LocalDateTime endTime = stepExecution.getEndTime() != null ? stepExecution.getEndTime() : LocalDateTime.now();
+        log.info("Step {} finished with {}: read={}, written={}, commits={}, rollbacks={}, took {} ms",
+                stepExecution.getStepName(), stepExecution.getStatus(), stepExecution.getReadCount(),
+                stepExecution.getWriteCount(), stepExecution.getCommitCount(), stepExecution.getRollbackCount(),
+                Duration.between(stepExecution.getStartTime(), endTime).toMillis());
+        return stepExecution.getExitStatus();
+    }
+}
@@ -0,0 +1,331 @@
+package by.bank.cache;
+
+import by.bank.dto.CachedUserPage;
+import by.bank.dto.UserSearchResultDto;
+import by.bank.dto.entityDto.AccountDto;
+import by.bank.dto.entityDto.EmailDataDto;
+import by.bank.dto.entityDto.PhoneDataDto;
+import by.bank.dto.entityDto.UserDto;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary format for cached search results. Fields are written in a fixed order without class descriptors or field
+ * names, numbers as variable-length integers. Payloads above {@code compressionThreshold} bytes are deflated.
+ * <p>
+ * Values of other types are written with JDK serialization. Entries written by the plain JDK serializer are
+ * still read, so switching formats does not require flushing the cache.
+ * <p>
+ * Layout: one header byte ({@link #RAW} or {@link #DEFLATED}), then the possibly deflated body, which starts
+ * with a type byte.
+ */
+public class CompactCacheSerializer implements RedisSerializer<Object> {
+    private static final byte RAW = 0;
+    private static final byte DEFLATED = 1;
+    /**
+     * First byte of the JDK serialization stream magic {@code 0xACED}.
+     */
+    private static final byte JDK_STREAM_MAGIC = (byte) 0xAC;
+    private static final byte TYPE_JDK = 0;
+    private static final byte TYPE_SLICE = 1;
+    private static final byte TYPE_SEARCH_RESULT = 2;
+    private static final byte TYPE_USER = 3;
+    private static final byte TYPE_USER_PAGE = 4;
+    private final JdkSerializationRedisSerializer jdkSerializer;
+    private final int compressionThreshold;
+
+    public CompactCacheSerializer(ClassLoader classLoader, int compressionThreshold) {
+        this.jdkSerializer = new JdkSerializationRedisSerializer(classLoader);
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public byte[] serialize(Object value) {
+        if (value == null) {
+            return new byte[0];
+        }
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            writeValue(new DataOutputStream(body), value);
+            if (body.size() <= compressionThreshold) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(body.size() + 1);
+                out.write(RAW);
+                body.writeTo(out);
+                return out.toByteArray();
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.size() / 2);
+            out.write(DEFLATED);
+            try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+                body.writeTo(deflater);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Cannot serialize " + value.getClass().getName(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] == JDK_STREAM_MAGIC) {
+            return jdkSerializer.deserialize(bytes);
+        }
+        InputStream body = new ByteArrayInputStream(bytes, 1, bytes.length - 1);
+        if (bytes[0] == DEFLATED) {
+            body = new InflaterInputStream(body);
+        } else if (bytes[0] != RAW) {
+            throw new SerializationException("Unknown cache entry header " + bytes[0]);
+        }
+        try (DataInputStream in = new DataInputStream(body)) {
+            return readValue(in);
+        } catch (IOException e) {
+            throw new SerializationException("Cannot deserialize cache entry", e);
+        }
+    }
+
+    private void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Slice<?> slice && isUserSlice(slice)) {
+            out.writeByte(TYPE_SLICE);
+            writeVarLong(out, slice.getNumber());
+            writeVarLong(out, slice.getSize());
+            writeSort(out, slice.getSort());
+            out.writeBoolean(slice.hasNext());
+            writeUsers(out, castUsers(slice.getContent()));
+        } else if (value instanceof UserSearchResultDto result) {
+            out.writeByte(TYPE_SEARCH_RESULT);
+            writeUsers(out, result.getUsers());
+            writeString(out, result.getNextCursor());
+        } else if (value instanceof CachedUserPage page) {
+            out.writeByte(TYPE_USER_PAGE);
+            writeString(out, page.getEtag());
+            out.writeBoolean(page.isHasNext());
+            writeString(out, page.getNextCursor());
+            writeVarLong(out, page.getBody().length);
+            out.write(page.getBody());
+        } else if (value instanceof UserDto user) {
+            out.writeByte(TYPE_USER);
+            writeUser(out, user);
+        } else {
+            out.writeByte(TYPE_JDK);
+            out.write(jdkSerializer.serialize(value));
+        }
+    }
+
+    private Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        return switch (type) {
+            case TYPE_SLICE -> {
+                int page = (int) readVarLong(in);
+                int size = (int) readVarLong(in);
+                Sort sort = readSort(in);
+                boolean hasNext = in.readBoolean();
+                yield new SliceImpl<>(readUsers(in), PageRequest.of(page, size, sort), hasNext);
+            }
+            case TYPE_SEARCH_RESULT -> new UserSearchResultDto(readUsers(in), readString(in));
+            case TYPE_USER -> readUser(in);
+            case TYPE_USER_PAGE -> {
+                String etag = readString(in);
+                boolean hasNext = in.readBoolean();
+                String nextCursor = readString(in);
+                byte[] body = new byte[(int) readVarLong(in)];
+                in.readFully(body);
+                yield new CachedUserPage(body, etag, hasNext, nextCursor);
+            }
+            case TYPE_JDK -> jdkSerializer.deserialize(in.readAllBytes());
+            default -> throw new SerializationException("Unknown cache entry type " + type);
+        };
+    }
+
+    private static boolean isUserSlice(Slice<?> slice) {
+        return slice.getPageable().isPaged() && slice.getContent().stream().allMatch(UserDto.class::isInstance);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<UserDto> castUsers(List<?> users) {
+        return (List<UserDto>) users;
+    }
+
+    private static void writeSort(DataOutputStream out, Sort sort) throws IOException {
+        List<Sort.Order> orders = sort.toList();
+        writeVarLong(out, orders.size());
+        for (Sort.Order order : orders) {
+            writeString(out, order.getProperty());
+            out.writeByte(order.getDirection().ordinal());
+            out.writeBoolean(order.isIgnoreCase());
+            out.writeByte(order.getNullHandling().ordinal());
+        }
+    }
+
+    private static Sort readSort(DataInputStream in) throws IOException {
+        int count = (int) readVarLong(in);
+        List<Sort.Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String property = readString(in);
+            Sort.Direction direction = Sort.Direction.values()[in.readByte()];
+            boolean ignoreCase = in.readBoolean();
+            Sort.Order order = new Sort.Order(direction, property, Sort.NullHandling.values()[in.readByte()]);
+            orders.add(ignoreCase ? order.ignoreCase() : order);
+        }
+        return Sort.by(orders);
+    }
+
+    private static void writeUsers(DataOutputStream out, List<UserDto> users) throws IOException {
+        writeVarLong(out, users.size());
+        for (UserDto user : users) {
+            writeUser(out, user);
+        }
+    }
+
+    private static List<UserDto> readUsers(DataInputStream in) throws IOException {
+        int count = (int) readVarLong(in);
+        List<UserDto> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(readUser(in));
+        }
+        return users;
+    }
+
+    private static void writeUser(DataOutputStream out, UserDto user) throws IOException {
+        writeNullableId(out, user.getId());
+        writeString(out, user.getName());
+        LocalDate dateOfBirth = user.getDateOfBirth();
+        out.writeBoolean(dateOfBirth != null);
+        if (dateOfBirth != null) {
+            out.writeLong(dateOfBirth.toEpochDay());
+        }
+        writeVarLong(out, user.getEmails().size());
+        for (EmailDataDto email : user.getEmails()) {
+            writeNullableId(out, email.getId());
+            writeString(out, email.getEmail());
+        }
+        AccountDto account = user.getAccount();
+        out.writeBoolean(account != null);
+        if (account != null) {
+            writeNullableId(out, account.getId());
+            writeDecimal(out, account.getBalance());
+        }
+        writeVarLong(out, user.getPhones().size());
+        for (PhoneDataDto phone : user.getPhones()) {
+            writeNullableId(out, phone.getId());
+            writeString(out, phone.getPhone());
+        }
+    }
+
+    private static UserDto readUser(DataInputStream in) throws IOException {
+        Long id = readNullableId(in);
+        String name = readString(in);
+        LocalDate dateOfBirth = in.readBoolean() ? LocalDate.ofEpochDay(in.readLong()) : null;
+        int emailCount = (int) readVarLong(in);
+        List<EmailDataDto> emails = new ArrayList<>(emailCount);
+        for (int i = 0; i < emailCount; i++) {
+            emails.add(new EmailDataDto(readNullableId(in), readString(in)));
+        }
+        AccountDto account = in.readBoolean() ? new AccountDto(readNullableId(in), readDecimal(in)) : null;
+        int phoneCount = (int) readVarLong(in);
+        List<PhoneDataDto> phones = new ArrayList<>(phoneCount);
+        for (int i = 0; i < phoneCount; i++) {
+            phones.add(new PhoneDataDto(readNullableId(in), readString(in)));
+        }
+        return new UserDto(id, name, dateOfBirth, emails, account, phones);
+    }
+
+    /**
+     * Ids are positive, so {@code 0} encodes {@code null}.
+     */
+    private static void writeNullableId(DataOutputStream out, Long id) throws IOException {
+        writeVarLong(out, id == null ? 0 : id);
+    }
+
+    private static Long readNullableId(DataInputStream in) throws IOException {
+        long id = readVarLong(in);
+        return id == 0 ? null : id;
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            byte[] unscaled = value.unscaledValue().toByteArray();
+            writeVarLong(out, value.scale());
+            writeVarLong(out, unscaled.length);
+            out.write(unscaled);
+        }
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        int scale = (int) readVarLong(in);
+        byte[] unscaled = new byte[(int) readVarLong(in)];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    /**
+     * Length prefixed UTF-8, the length shifted by one so that {@code 0} encodes {@code null}.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) (length - 1)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Unsigned LEB128: seven bits per byte, the high bit set on all but the last byte.
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Malformed variable-length integer");
+    }
+}
@@ -0,0 +1,66 @@
+package by.bank.cache;
+
+import by.bank.config.CacheSerialization;
+import by.bank.service.UserSearchIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+
+@Configuration
+public class NearCacheConfig {
+
+    /**
+     * Replaces the auto-configured Redis cache manager, with the value format chosen by {@code bank.cache.serializer}
+     * and entries expiring after {@code bank.cache.time-to-live}, and wraps it in a near cache unless {@code bank.cache.near.enabled} is off.
+     */
+    @Bean
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory, ResourceLoader resourceLoader, StringRedisTemplate redisTemplate,
+                                     @Value("${bank.cache.near.enabled:true}") boolean enabled,
+                                     @Value("${bank.cache.near.maximum-size:10000}") long maximumSize,
+                                     @Value("${bank.cache.near.time-to-live:30s}") Duration timeToLive,
+                                     @Value("${bank.cache.time-to-live:10m}") Duration entryTimeToLive,
+                                     @Value("${bank.cache.serializer:JDK}") CacheSerialization serialization,
+                                     @Value("${bank.cache.compression-threshold:1024}") int compressionThreshold) {
+        ClassLoader classLoader = resourceLoader.getClassLoader();
+        RedisSerializer<Object> valueSerializer = serialization == CacheSerialization.COMPACT
+                ? new CompactCacheSerializer(classLoader, compressionThreshold)
+                : new JdkSerializationRedisSerializer(classLoader);
+        RedisCacheConfiguration configuration = RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl(entryTimeToLive)
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(valueSerializer));
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory).cacheDefaults(configuration).build();
+        redisCacheManager.initializeCaches();
+        if (!enabled) {
+            return redisCacheManager;
+        }
+        return new TwoLevelCacheManager(redisCacheManager, redisTemplate, maximumSize, timeToLive);
+    }
+
+    /**
+     * Also delivers the {@link UserSearchIndex} updates, so both kinds of in-heap copies share one subscription.
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheEvictionListenerContainer(RedisConnectionFactory connectionFactory, CacheManager cacheManager,
+                                                                        UserSearchIndex userSearchIndex) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        if (cacheManager instanceof TwoLevelCacheManager twoLevelCacheManager) {
+            container.addMessageListener(twoLevelCacheManager, new ChannelTopic(TwoLevelCacheManager.CHANNEL));
+        }
+        container.addMessageListener(userSearchIndex, new ChannelTopic(UserSearchIndex.CHANNEL));
+        return container;
+    }
+}
@@ -0,0 +1,104 @@
+package by.bank.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Cache that serves hits from a bounded in-heap map and falls back to the shared Redis cache. Writes go to Redis
+ * first; evictions are broadcast by {@link TwoLevelCacheManager} so that every node drops its local copy.
+ * Local entries are keyed by the string form of the key, the form evictions are broadcast in.
+ */
+public class TwoLevelCache implements org.springframework.cache.Cache {
+    private final String name;
+    private final org.springframework.cache.Cache remote;
+    private final Cache<String, ValueWrapper> local;
+    private final TwoLevelCacheManager manager;
+
+    TwoLevelCache(String name, org.springframework.cache.Cache remote, Cache<String, ValueWrapper> local, TwoLevelCacheManager manager) {
+        this.name = name;
+        this.remote = remote;
+        this.local = local;
+        this.manager = manager;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = localKey(key);
+        ValueWrapper value = local.getIfPresent(localKey);
+        if (value != null) {
+            return value;
+        }
+        value = remote.get(key);
+        if (value != null) {
+            local.put(localKey, new SimpleValueWrapper(value.get()));
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper == null ? null : wrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value = remote.get(key, valueLoader);
+        local.put(localKey(key), new SimpleValueWrapper(value));
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        local.put(localKey(key), new SimpleValueWrapper(value));
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        local.invalidate(localKey(key));
+        manager.publishEviction(name, localKey(key));
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.invalidateAll();
+        manager.publishEviction(name, null);
+    }
+
+    void evictLocally(String localKey) {
+        if (localKey == null) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(localKey);
+        }
+    }
+
+    private static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+}
@@ -0,0 +1,97 @@
+package by.bank.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Puts a near cache in front of every cache of the Redis cache manager, see {@link TwoLevelCache}.
+ * Evictions are published on {@link #CHANNEL} and applied by every node, including the publisher.
+ * <p>
+ * A node that read a Redis entry right before it was evicted may store it locally after the eviction message
+ * has been applied, so local entries also expire after a short time to live. Evictions published while a node
+ * was not subscribed are lost, so a node drops all local entries whenever its listener (re)subscribes and
+ * whenever it fails to publish.
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, MessageListener, SubscriptionListener {
+    public static final String CHANNEL = "bank:cache:evictions";
+    private static final char SEPARATOR = '\n';
+    private final CacheManager remote;
+    private final StringRedisTemplate redisTemplate;
+    private final long maximumSize;
+    private final Duration timeToLive;
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager remote, StringRedisTemplate redisTemplate, long maximumSize, Duration timeToLive) {
+        this.remote = remote;
+        this.redisTemplate = redisTemplate;
+        this.maximumSize = maximumSize;
+        this.timeToLive = timeToLive;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, cacheName -> {
+            Cache remoteCache = remote.getCache(cacheName);
+            if (remoteCache == null) {
+                return null;
+            }
+            return new TwoLevelCache(cacheName, remoteCache, Caffeine.newBuilder()
+                    .maximumSize(maximumSize)
+                    .expireAfterWrite(timeToLive)
+                    .build(), this);
+        });
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    /**
+     * @param key the local key to evict, or {@code null} to clear the cache
+     */
+    void publishEviction(String cacheName, String key) {
+        String message = key == null ? cacheName : cacheName + SEPARATOR + key;
+        try {
+            redisTemplate.convertAndSend(CHANNEL, message);
+        } catch (Exception e) {
+            log.error("Error publishing eviction of {} from cache {}: {}", key, cacheName, e.getMessage());
+            clearLocally();
+        }
+    }
+
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        log.info("Subscribed to cache evictions, clearing local caches");
+        clearLocally();
+    }
+
+    private void clearLocally() {
+        caches.values().forEach(cache -> cache.evictLocally(null));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(SEPARATOR);
+        String cacheName = separator < 0 ? body : body.substring(0, separator);
+        TwoLevelCache cache = caches.get(cacheName);
+        if (cache != null) {
+            cache.evictLocally(separator < 0 ? null : body.substring(separator + 1));
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package by.bank.config;
+
+/**
+ * Strategy used by {@link by.bank.service.AccountService#updateBalances()} to accrue interest.
+ */
+public enum AccrualMode {
+    /**
+     * Loads every account and saves the accrued balance row by row.
+     */
+    ENTITY_LOOP,
+    /**
+     * Accrues all accounts below the cap with one UPDATE statement, without loading entities.
+     */
+    SET_BASED,
+    /**
+     * Runs the partitioned, chunked Spring Batch job defined in {@link by.bank.batch.AccrualJobConfig}.
+     */
+    BATCH_JOB,
+    /**
+     * Accrues small chunks, each in its own transaction, skipping rows locked by transfers and
+     * re-queueing them for a later pass, see {@link by.bank.service.ChunkedAccrualService}.
+     */
+    CHUNKED,
+    /**
+     * Does not accrue on schedule. Accounts accrue all elapsed periods in closed form when a transfer
+     * touches them, see {@link by.bank.service.LazyInterestService}.
+     */
+    LAZY
+}
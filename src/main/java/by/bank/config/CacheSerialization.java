@@ -0,0 +1,16 @@
+package by.bank.config;
+
+/**
+ * Format of values stored in the Redis cache.
+ */
+public enum CacheSerialization {
+    /**
+     * Plain JDK serialization of the cached objects.
+     */
+    JDK,
+    /**
+     * {@link by.bank.cache.CompactCacheSerializer}: schema-based binary for search results, deflated above
+     * a size threshold, JDK serialization for anything else.
+     */
+    COMPACT
+}
@@ -1,11 +1,12 @@
 package by.bank.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.retry.annotation.EnableRetry;
-import org.springframework.retry.backoff.ExponentialBackOffPolicy;
+import org.springframework.retry.backoff.ExponentialRandomBackOffPolicy;
 import org.springframework.retry.policy.SimpleRetryPolicy;
 import org.springframework.retry.support.RetryTemplate;
 
@@ -17,16 +18,24 @@ import java.util.Map;
 public class RetryConfig {
 
     @Bean
-    public RetryTemplate retryTemplate() {
+    public RetryTemplate retryTemplate(@Value("${bank.transfer.retry.max-attempts:5}") int maxAttempts,
+                                       @Value("${bank.transfer.retry.initial-interval:20}") long initialInterval,
+                                       @Value("${bank.transfer.retry.max-interval:500}") long maxInterval) {
         RetryTemplate template = new RetryTemplate();
 
         Map<Class<? extends Throwable>, Boolean> retryableExceptions = new HashMap<>();
         retryableExceptions.put(OptimisticLockingFailureException.class, true);
         retryableExceptions.put(PessimisticLockingFailureException.class, true);
 
-        template.setRetryPolicy(new SimpleRetryPolicy(5, retryableExceptions));
-        template.setBackOffPolicy(new ExponentialBackOffPolicy());
+        template.setRetryPolicy(new SimpleRetryPolicy(maxAttempts, retryableExceptions));
+
+        // Randomised intervals keep transfers that collided once from colliding again on the next attempt.
+        ExponentialRandomBackOffPolicy backOffPolicy = new ExponentialRandomBackOffPolicy();
+        backOffPolicy.setInitialInterval(initialInterval);
+        backOffPolicy.setMultiplier(2);
+        backOffPolicy.setMaxInterval(maxInterval);
+        template.setBackOffPolicy(backOffPolicy);
 
         return template;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package by.bank.config;
+
+/**
+ * Concurrency strategy used by {@link by.bank.service.AccountService#transfer}.
+ */
+public enum TransferMode {
+    /**
+     * Locks sender and receiver rows in account id order, then updates the loaded entities.
+     */
+    LOCK_ORDERED,
+    /**
+     * Issues a guarded debit and a credit as two plain UPDATE statements without loading entities.
+     */
+    CONDITIONAL_UPDATE,
+    /**
+     * Reads accounts without row locks and relies on the {@code @Version} check at commit,
+     * retrying conflicting transfers through the {@code RetryTemplate} bean.
+     */
+    OPTIMISTIC
+}
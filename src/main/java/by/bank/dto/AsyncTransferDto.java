@@ -0,0 +1,15 @@
+package by.bank.dto;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@Value
+public class AsyncTransferDto {
+    UUID id;
+    Long transferTo;
+    BigDecimal value;
+    TransferStatus status;
+    String message;
+}
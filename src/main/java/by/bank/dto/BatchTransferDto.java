@@ -0,0 +1,15 @@
+package by.bank.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+public class BatchTransferDto {
+    @NotEmpty
+    @Size(max = 1000)
+    List<@Valid TransferDto> transfers;
+}
@@ -0,0 +1,22 @@
+package by.bank.dto;
+
+import lombok.Value;
+
+import java.io.Serializable;
+
+/**
+ * A {@code GET /users} response as sent to the client: the serialized JSON body and the headers derived from it.
+ */
+@Value
+public class CachedUserPage implements Serializable {
+    byte[] body;
+    /**
+     * Quoted strong ETag of {@link #body}.
+     */
+    String etag;
+    boolean hasNext;
+    /**
+     * Cursor of the next page in keyset mode, otherwise {@code null}.
+     */
+    String nextCursor;
+}
@@ -0,0 +1,9 @@
+package by.bank.dto;
+
+import lombok.Value;
+
+@Value
+public class IdempotentResponse {
+    int status;
+    String body;
+}
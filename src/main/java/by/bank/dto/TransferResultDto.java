@@ -0,0 +1,12 @@
+package by.bank.dto;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+@Value
+public class TransferResultDto {
+    Long transferTo;
+    BigDecimal value;
+    TransferStatus status;
+}
@@ -0,0 +1,10 @@
+package by.bank.dto;
+
+public enum TransferStatus {
+    QUEUED,
+    PROCESSING,
+    COMPLETED,
+    INSUFFICIENT_FUNDS,
+    ACCOUNT_NOT_FOUND,
+    FAILED
+}
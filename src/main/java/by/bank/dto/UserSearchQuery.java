@@ -0,0 +1,45 @@
+package by.bank.dto;
+
+import lombok.Value;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDate;
+
+/**
+ * Parameters of a {@code GET /users} request with the ones that do not affect the result dropped, so equivalent
+ * requests share one cache entry.
+ */
+@Value
+public class UserSearchQuery {
+    LocalDate dateOfBirth;
+    String phone;
+    String name;
+    String email;
+    /**
+     * Only set for the first keyset page; offset pages are ordered by id and cursors carry their own order.
+     */
+    UserSortOrder order;
+    /**
+     * {@code null} for offset pagination.
+     */
+    String after;
+    /**
+     * Always {@code 0} for keyset pagination.
+     */
+    int page;
+    int size;
+
+    public static UserSearchQuery of(LocalDate dateOfBirth, String phone, String name, String email, int page, int size,
+                                     String after, UserSortOrder order) {
+        if (after == null) {
+            return new UserSearchQuery(dateOfBirth, phone, name, email, null, null, page, size);
+        }
+        return StringUtils.hasText(after)
+                ? new UserSearchQuery(dateOfBirth, phone, name, email, null, after, 0, size)
+                : new UserSearchQuery(dateOfBirth, phone, name, email, order, "", 0, size);
+    }
+
+    public boolean isKeyset() {
+        return after != null;
+    }
+}
@@ -0,0 +1,16 @@
+package by.bank.dto;
+
+import by.bank.dto.entityDto.UserDto;
+import lombok.Value;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Value
+public class UserSearchResultDto implements Serializable {
+    List<UserDto> users;
+    /**
+     * Cursor of the next page, {@code null} on the last page.
+     */
+    String nextCursor;
+}
@@ -0,0 +1,16 @@
+package by.bank.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Key of a keyset-paginated user search; ties are broken by user id.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum UserSortOrder {
+    NAME("name"),
+    DATE_OF_BIRTH("dateOfBirth");
+
+    private final String attribute;
+}
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.*;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 @Entity
 @Getter
 @Setter
@@ -18,5 +19,18 @@ public class Account {
     private BigDecimal balance;
     @Column(updatable=false)
     private BigDecimal initialBalance;
+    @Version
+    @Column(columnDefinition = "bigint not null default 0")
+    private Long version;
+    /**
+     * Start of the first interest period not yet applied to {@link #balance}; only used in lazy accrual mode.
+     */
+    @Column(columnDefinition = "timestamp(6) with time zone default now()")
+    private Instant lastAccruedAt = Instant.now();
+    /**
+     * Set once scheduled accrual finds the balance at its cap, so accrual can skip the account until a debit resets it.
+     */
+    @Column(columnDefinition = "boolean not null default false")
+    private boolean saturated;
 
 }
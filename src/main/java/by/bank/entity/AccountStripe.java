@@ -0,0 +1,28 @@
+package by.bank.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Credit-only sub-balance of a hot account. The spendable balance of a striped account is
+ * {@code account.balance} plus the balances of all its stripes.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "account_stripe", uniqueConstraints = @UniqueConstraint(name = "uk_account_stripe", columnNames = {"account_id", "stripe_no"}))
+public class AccountStripe {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+    @Column(name = "stripe_no", nullable = false)
+    private int stripeNo;
+    @Column(precision = 38, scale = 2)
+    private BigDecimal balance;
+}
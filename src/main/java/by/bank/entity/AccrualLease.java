@@ -0,0 +1,26 @@
+package by.bank.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Last accrual tick claimed for one partition of the account id space, shared by all application nodes.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "accrual_lease")
+public class AccrualLease {
+    @Id
+    @Column(name = "partition_no")
+    private Integer partitionNo;
+    @Column(name = "last_tick", nullable = false)
+    private Long lastTick;
+    private String holder;
+    @Column(name = "claimed_at")
+    private Instant claimedAt;
+}
@@ -0,0 +1,37 @@
+package by.bank.entity;
+
+import by.bank.dto.TransferStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Transfer accepted through {@code POST /transfers/async}. Stored before the request is acknowledged, so its status
+ * can be read on any node and a queued transfer survives the node that accepted it.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "async_transfer", indexes = @Index(name = "idx_async_transfer_status_updated", columnList = "status, updated_at"))
+public class AsyncTransfer {
+    @Id
+    private UUID id;
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    @Column(name = "transfer_to", nullable = false)
+    private Long transferTo;
+    @Column(nullable = false, precision = 38, scale = 2)
+    private BigDecimal amount;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private TransferStatus status;
+    @Column(length = 500)
+    private String message;
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
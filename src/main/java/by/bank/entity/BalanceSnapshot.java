@@ -0,0 +1,26 @@
+package by.bank.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Journal-derived balance of an account covering all entries created before {@code asOf}.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "balance_snapshot")
+public class BalanceSnapshot {
+    @Id
+    @Column(name = "account_id")
+    private Long accountId;
+    @Column(precision = 38, scale = 2)
+    private BigDecimal balance;
+    @Column(name = "as_of")
+    private Instant asOf;
+}
@@ -0,0 +1,43 @@
+package by.bank.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Outcome of a request made with an {@code Idempotency-Key}. A successful transfer writes its record in its own
+ * transaction, so the primary key lets at most one execution per key commit.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(IdempotencyRecord.Key.class)
+@Table(name = "idempotency_record", indexes = @Index(name = "idx_idempotency_record_created", columnList = "created_at"))
+public class IdempotencyRecord {
+    @Id
+    @Column(length = 100)
+    private String scope;
+    @Id
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
+    @Column(nullable = false)
+    private String fingerprint;
+    @Column(nullable = false)
+    private int status;
+    @Column(columnDefinition = "text")
+    private String body;
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String scope;
+        private String idempotencyKey;
+    }
+}
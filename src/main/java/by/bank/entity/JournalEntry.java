@@ -0,0 +1,56 @@
+package by.bank.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.SourceType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Immutable record of a single balance movement. {@code amount} is signed: debits are negative.
+ * {@code created_at} is the database transaction time, the same clock the native journal inserts and the
+ * snapshot cutoff use.
+ */
+@Entity
+@Getter
+@NoArgsConstructor
+@Table(name = "transfer_journal", indexes = @Index(name = "idx_transfer_journal_account_created", columnList = "account_id, created_at"))
+public class JournalEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transfer_journal_seq")
+    @SequenceGenerator(name = "transfer_journal_seq", sequenceName = "transfer_journal_seq", allocationSize = 50)
+    private Long id;
+    @Column(name = "account_id", nullable = false, updatable = false)
+    private Long accountId;
+    @Column(name = "counterparty_account_id", updatable = false)
+    private Long counterpartyAccountId;
+    @Column(nullable = false, updatable = false, precision = 38, scale = 2)
+    private BigDecimal amount;
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entry_type", nullable = false, updatable = false, length = 20)
+    private JournalEntryType entryType;
+    @CreationTimestamp(source = SourceType.DB)
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    public JournalEntry(Long accountId, Long counterpartyAccountId, BigDecimal amount, JournalEntryType entryType) {
+        this.accountId = accountId;
+        this.counterpartyAccountId = counterpartyAccountId;
+        this.amount = amount;
+        this.entryType = entryType;
+    }
+
+    public static JournalEntry debit(Long accountId, Long counterpartyAccountId, BigDecimal value) {
+        return new JournalEntry(accountId, counterpartyAccountId, value.negate(), JournalEntryType.TRANSFER_DEBIT);
+    }
+
+    public static JournalEntry credit(Long accountId, Long counterpartyAccountId, BigDecimal value) {
+        return new JournalEntry(accountId, counterpartyAccountId, value, JournalEntryType.TRANSFER_CREDIT);
+    }
+
+    public static JournalEntry interest(Long accountId, BigDecimal amount) {
+        return new JournalEntry(accountId, null, amount, JournalEntryType.INTEREST);
+    }
+}
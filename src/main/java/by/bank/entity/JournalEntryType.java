@@ -0,0 +1,11 @@
+package by.bank.entity;
+
+public enum JournalEntryType {
+    TRANSFER_DEBIT,
+    TRANSFER_CREDIT,
+    INTEREST,
+    /**
+     * Balance an account had when journaling started, relative to its {@code initial_balance}.
+     */
+    OPENING
+}
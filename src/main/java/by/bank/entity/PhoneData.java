@@ -8,6 +8,7 @@ import lombok.*;
 @Entity
 @NoArgsConstructor
 @AllArgsConstructor
+@Table(indexes = @Index(name = "idx_phone_data_user_id", columnList = "user_id"))
 public class PhoneData {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
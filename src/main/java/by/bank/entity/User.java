@@ -12,7 +12,7 @@ import java.util.List;
 @Setter
 @RequiredArgsConstructor
 @AllArgsConstructor
-@Table(name="users")
+@Table(name="users", indexes = @Index(name = "idx_users_date_of_birth", columnList = "date_of_birth"))
 public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -1,5 +1,6 @@
 package by.bank.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -27,4 +28,19 @@ public class GlobalExceptionHandler {
     public ResponseEntity<String> handleAccessDenied(DataPersistingException ex) {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ex.getMessage());
     }
+
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<String> handleIdempotencyConflict(IdempotencyConflictException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<String> handleInvalidCursor(InvalidCursorException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(TransferQueueFullException.class)
+    public ResponseEntity<String> handleTransferQueueFull(TransferQueueFullException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").body(ex.getMessage());
+    }
 }
@@ -0,0 +1,11 @@
+package by.bank.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class TransferQueueFullException extends RuntimeException {
+    public TransferQueueFullException(String message) {
+        super(message);
+    }
+}
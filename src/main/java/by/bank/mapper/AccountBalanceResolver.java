@@ -0,0 +1,37 @@
+package by.bank.mapper;
+
+import by.bank.entity.Account;
+import by.bank.service.HotAccountService;
+import by.bank.service.LazyInterestService;
+import lombok.RequiredArgsConstructor;
+import org.mapstruct.Named;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+/**
+ * Resolves the balance shown to clients: it includes interest accrued lazily but not persisted yet and,
+ * for striped accounts, the not yet consolidated stripes.
+ */
+@Component
+@RequiredArgsConstructor
+public class AccountBalanceResolver {
+    private final HotAccountService hotAccountService;
+    private final LazyInterestService lazyInterestService;
+
+    @Named("totalBalance")
+    public BigDecimal totalBalance(Account account) {
+        if (account.getId() == null || !hotAccountService.isStriped(account.getId())) {
+            return totalBalance(account, BigDecimal.ZERO);
+        }
+        return totalBalance(account, hotAccountService.stripedBalance(account.getId()));
+    }
+
+    /**
+     * Like {@link #totalBalance(Account)}, for callers that have read the sum of the stripes along with the account.
+     * Interest accrues on the account row only; stripes are added after it.
+     */
+    public BigDecimal totalBalance(Account account, BigDecimal stripedBalance) {
+        return lazyInterestService.effectiveBalance(account).add(stripedBalance);
+    }
+}
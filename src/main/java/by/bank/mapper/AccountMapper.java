@@ -6,11 +6,12 @@ import org.mapstruct.*;
 
 import java.util.List;
 
-@Mapper(unmappedTargetPolicy = ReportingPolicy.IGNORE, componentModel = MappingConstants.ComponentModel.SPRING)
+@Mapper(unmappedTargetPolicy = ReportingPolicy.IGNORE, componentModel = MappingConstants.ComponentModel.SPRING, uses = AccountBalanceResolver.class)
 public interface AccountMapper {
 
     Account toEntity(AccountDto accountDto);
 
+    @Mapping(target = "balance", source = ".", qualifiedByName = "totalBalance")
     AccountDto toDto(Account account);
 
     @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
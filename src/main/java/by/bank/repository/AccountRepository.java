@@ -4,7 +4,13 @@ import by.bank.entity.Account;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 
@@ -13,4 +19,177 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     Optional<Account> findByUserId(Long userId);
 
+    /**
+     * Locks all accounts of the given users in one statement. Rows are locked in account id order,
+     * so concurrent callers always acquire their locks in the same sequence and cannot deadlock.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Account> findAllByUserIdInOrderById(Collection<Long> userIds);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Account a where a.id = :id")
+    Optional<Account> findLockedById(@Param("id") Long id);
+
+    List<Account> findAllByUserIdIn(Collection<Long> userIds);
+
+    /**
+     * Locks the accounts of the given users in account id order without loading them, the same order
+     * {@link #findAllByUserIdInOrderById} locks in.
+     *
+     * @return the locked account ids
+     */
+    @Query(value = "SELECT id FROM account WHERE user_id IN (:userIds) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockIdsByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
+    List<Account> findAllBySaturatedFalse();
+
+    boolean existsByUserId(Long userId);
+
+    /**
+     * Debits the account only if it holds at least {@code value}.
+     *
+     * @return 1 if the account was debited, 0 if it is missing or has insufficient funds
+     */
+    @Modifying
+    @Query(value = "UPDATE account SET balance = balance - :value, saturated = false, version = version + 1 WHERE user_id = :userId AND balance >= :value", nativeQuery = true)
+    int debitIfSufficient(@Param("userId") Long userId, @Param("value") BigDecimal value);
+
+    /**
+     * @return 1 if the account was credited, 0 if it does not exist
+     */
+    @Modifying
+    @Query(value = "UPDATE account SET balance = balance + :value, version = version + 1 WHERE user_id = :userId", nativeQuery = true)
+    int credit(@Param("userId") Long userId, @Param("value") BigDecimal value);
+
+    /**
+     * Multiplies the balance of every unsaturated account by {@code multiplier}, capped at
+     * {@code initial_balance * cap}, journals each accrued amount and marks the accounts that reached the cap
+     * as saturated. Rows are locked in account id order before the update, the same order transfers use.
+     *
+     * @return the number of accounts that accrued interest
+     */
+    @Modifying
+    @Query(value = """
+            WITH locked AS (
+                SELECT id, balance, initial_balance * :cap AS max_balance FROM account
+                WHERE NOT saturated
+                ORDER BY id
+                FOR UPDATE
+            ), accrued AS (
+                UPDATE account a
+                SET balance = CASE WHEN l.balance < l.max_balance THEN LEAST(l.balance * :multiplier, l.max_balance) ELSE l.balance END,
+                    saturated = l.balance * :multiplier >= l.max_balance,
+                    version = a.version + 1
+                FROM locked l
+                WHERE a.id = l.id
+                RETURNING a.id, a.balance - l.balance AS amount
+            )
+            INSERT INTO transfer_journal (id, account_id, counterparty_account_id, amount, entry_type, created_at)
+            SELECT nextval('transfer_journal_seq'), id, NULL, amount, 'INTEREST', now()
+            FROM accrued
+            WHERE amount <> 0
+            """, nativeQuery = true)
+    int accrueInterest(@Param("multiplier") BigDecimal multiplier, @Param("cap") BigDecimal cap);
+
+    /**
+     * Same as {@link #accrueInterest} restricted to the given accounts, used by the chunked accrual job.
+     */
+    @Modifying
+    @Query(value = """
+            WITH locked AS (
+                SELECT id, balance, initial_balance * :cap AS max_balance FROM account
+                WHERE id IN (:ids) AND NOT saturated
+                ORDER BY id
+                FOR UPDATE
+            ), accrued AS (
+                UPDATE account a
+                SET balance = CASE WHEN l.balance < l.max_balance THEN LEAST(l.balance * :multiplier, l.max_balance) ELSE l.balance END,
+                    saturated = l.balance * :multiplier >= l.max_balance,
+                    version = a.version + 1
+                FROM locked l
+                WHERE a.id = l.id
+                RETURNING a.id, a.balance - l.balance AS amount
+            )
+            INSERT INTO transfer_journal (id, account_id, counterparty_account_id, amount, entry_type, created_at)
+            SELECT nextval('transfer_journal_seq'), id, NULL, amount, 'INTEREST', now()
+            FROM accrued
+            WHERE amount <> 0
+            """, nativeQuery = true)
+    int accrueInterestForIds(@Param("ids") Collection<Long> ids, @Param("multiplier") BigDecimal multiplier, @Param("cap") BigDecimal cap);
+
+    /**
+     * Keyset page of the ids of unsaturated accounts within the partition {@code id % partitions = partition},
+     * read without locks. Served by the partial index on unsaturated accounts.
+     */
+    @Query(value = """
+            SELECT id FROM account
+            WHERE id > :afterId AND id % :partitions = :partition AND NOT saturated
+            ORDER BY id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Long> findAccrualCandidates(@Param("afterId") long afterId, @Param("partition") int partition, @Param("partitions") int partitions,
+                                     @Param("limit") int limit);
+
+    /**
+     * Variant of {@link #accrueInterestForIds} that skips rows locked by other transactions instead of
+     * waiting for them.
+     *
+     * @return the ids that were locked and processed; the remaining ones were skipped
+     */
+    @Query(value = """
+            WITH locked AS (
+                SELECT id, balance, initial_balance * :cap AS max_balance FROM account
+                WHERE id IN (:ids) AND NOT saturated
+                ORDER BY id
+                FOR UPDATE SKIP LOCKED
+            ), accrued AS (
+                UPDATE account a
+                SET balance = CASE WHEN l.balance < l.max_balance THEN LEAST(l.balance * :multiplier, l.max_balance) ELSE l.balance END,
+                    saturated = l.balance * :multiplier >= l.max_balance,
+                    version = a.version + 1
+                FROM locked l
+                WHERE a.id = l.id
+                RETURNING a.id, a.balance - l.balance AS amount
+            ), journaled AS (
+                INSERT INTO transfer_journal (id, account_id, counterparty_account_id, amount, entry_type, created_at)
+                SELECT nextval('transfer_journal_seq'), id, NULL, amount, 'INTEREST', now()
+                FROM accrued
+                WHERE amount <> 0
+            )
+            SELECT id FROM locked
+            """, nativeQuery = true)
+    List<Long> accrueInterestSkipLocked(@Param("ids") Collection<Long> ids, @Param("multiplier") BigDecimal multiplier, @Param("cap") BigDecimal cap);
+
+    /**
+     * Closed-form lazy accrual of the given users' accounts: applies all interest periods elapsed since
+     * {@code last_accrued_at} at once, keeps the unfinished period, and journals the accrued amounts.
+     */
+    @Modifying
+    @Query(value = """
+            WITH locked AS (
+                SELECT id, balance, initial_balance * :cap AS max_balance, last_accrued_at,
+                       FLOOR(EXTRACT(EPOCH FROM (now() - last_accrued_at)) * 1000 / :periodMillis) AS periods
+                FROM account
+                WHERE user_id IN (:userIds) AND last_accrued_at IS NOT NULL
+                ORDER BY id
+                FOR UPDATE
+            ), accrued AS (
+                UPDATE account a
+                SET balance = CASE WHEN l.balance < l.max_balance
+                                   THEN ROUND(LEAST(l.balance * POWER(:multiplier, LEAST(l.periods, :maxPeriods)), l.max_balance), 2)
+                                   ELSE l.balance END,
+                    last_accrued_at = l.last_accrued_at + CAST(l.periods * :periodMillis AS double precision) * INTERVAL '1 millisecond',
+                    version = a.version + 1
+                FROM locked l
+                WHERE a.id = l.id AND l.periods > 0
+                RETURNING a.id, a.balance - l.balance AS amount
+            )
+            INSERT INTO transfer_journal (id, account_id, counterparty_account_id, amount, entry_type, created_at)
+            SELECT nextval('transfer_journal_seq'), id, NULL, amount, 'INTEREST', now()
+            FROM accrued
+            WHERE amount <> 0
+            """, nativeQuery = true)
+    int accrueLazily(@Param("userIds") Collection<Long> userIds, @Param("multiplier") BigDecimal multiplier, @Param("cap") BigDecimal cap,
+                     @Param("periodMillis") long periodMillis, @Param("maxPeriods") int maxPeriods);
+
 }
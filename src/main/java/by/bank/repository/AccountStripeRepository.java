@@ -0,0 +1,33 @@
+package by.bank.repository;
+
+import by.bank.entity.AccountStripe;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface AccountStripeRepository extends JpaRepository<AccountStripe, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<AccountStripe> findAllByAccountIdOrderByStripeNo(Long accountId);
+
+    @Query("select coalesce(sum(s.balance), 0) from AccountStripe s where s.accountId = :accountId")
+    BigDecimal sumBalanceByAccountId(@Param("accountId") Long accountId);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE account_stripe SET balance = balance + :value WHERE account_id = :accountId AND stripe_no = :stripeNo", nativeQuery = true)
+    int credit(@Param("accountId") Long accountId, @Param("stripeNo") int stripeNo, @Param("value") BigDecimal value);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO account_stripe (account_id, stripe_no, balance)
+            SELECT :accountId, n, 0 FROM generate_series(0, :stripes - 1) AS n
+            ON CONFLICT (account_id, stripe_no) DO NOTHING
+            """, nativeQuery = true)
+    int createStripes(@Param("accountId") Long accountId, @Param("stripes") int stripes);
+}
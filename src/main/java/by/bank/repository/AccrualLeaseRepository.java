@@ -0,0 +1,38 @@
+package by.bank.repository;
+
+import by.bank.entity.AccrualLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface AccrualLeaseRepository extends JpaRepository<AccrualLease, Integer> {
+
+    /**
+     * Claims the tick for the partition unless this or a later tick has already been claimed.
+     *
+     * @return 1 if the caller claimed the tick, 0 if another node already ran it
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO accrual_lease (partition_no, last_tick, holder, claimed_at)
+            VALUES (:partition, :tick, :holder, now())
+            ON CONFLICT (partition_no) DO UPDATE
+            SET last_tick = excluded.last_tick, holder = excluded.holder, claimed_at = excluded.claimed_at
+            WHERE accrual_lease.last_tick < excluded.last_tick
+            """, nativeQuery = true)
+    int claim(@Param("partition") int partition, @Param("tick") long tick, @Param("holder") String holder);
+
+    /**
+     * Gives back a tick the holder claimed but failed to run, so that it can be claimed again.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE accrual_lease SET last_tick = :tick - 1
+            WHERE partition_no = :partition AND last_tick = :tick AND holder = :holder
+            """, nativeQuery = true)
+    int release(@Param("partition") int partition, @Param("tick") long tick, @Param("holder") String holder);
+}
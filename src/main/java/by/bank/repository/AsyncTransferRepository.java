@@ -0,0 +1,67 @@
+package by.bank.repository;
+
+import by.bank.entity.AsyncTransfer;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * All timestamps are taken from the database clock, so nodes with skewed clocks agree on the age of a transfer.
+ */
+public interface AsyncTransferRepository extends JpaRepository<AsyncTransfer, UUID> {
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO async_transfer (id, user_id, transfer_to, amount, status, updated_at)
+            VALUES (:id, :userId, :transferTo, :amount, 'QUEUED', now())
+            """, nativeQuery = true)
+    void insertQueued(@Param("id") UUID id, @Param("userId") Long userId, @Param("transferTo") Long transferTo, @Param("amount") BigDecimal amount);
+
+    /**
+     * Moves the transfer from status {@code from} to {@code to}.
+     *
+     * @return 1 if the transfer was in status {@code from}, 0 if another node or thread has moved it already
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE async_transfer SET status = :to, message = :message, updated_at = now()
+            WHERE id = :id AND status = :from
+            """, nativeQuery = true)
+    int transition(@Param("id") UUID id, @Param("from") String from, @Param("to") String to, @Param("message") String message);
+
+    @Query(value = """
+            SELECT * FROM async_transfer
+            WHERE status = :status AND updated_at < now() - CAST(:ageMillis AS double precision) * INTERVAL '1 millisecond'
+            ORDER BY updated_at
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<AsyncTransfer> findOlderThan(@Param("status") String status, @Param("ageMillis") long ageMillis, @Param("limit") int limit);
+
+    /**
+     * Marks transfers that have been processing for longer than {@code ageMillis} as failed.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE async_transfer SET status = 'FAILED', message = :message, updated_at = now()
+            WHERE status = 'PROCESSING' AND updated_at < now() - CAST(:ageMillis AS double precision) * INTERVAL '1 millisecond'
+            """, nativeQuery = true)
+    int failProcessingOlderThan(@Param("ageMillis") long ageMillis, @Param("message") String message);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM async_transfer
+            WHERE status IN (:statuses) AND updated_at < now() - CAST(:ageMillis AS double precision) * INTERVAL '1 millisecond'
+            """, nativeQuery = true)
+    int deleteOlderThan(@Param("statuses") Collection<String> statuses, @Param("ageMillis") long ageMillis);
+}
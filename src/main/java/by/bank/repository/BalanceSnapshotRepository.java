@@ -0,0 +1,75 @@
+package by.bank.repository;
+
+import by.bank.entity.BalanceSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+/**
+ * Journal-derived balances. An account without a snapshot starts from its {@code initial_balance};
+ * its balance is the snapshot plus every journal entry created at or after the snapshot's {@code as_of}.
+ * Accounts that existed before journaling started carry the difference in an {@code OPENING} entry.
+ */
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+
+    /**
+     * Folds journal entries older than {@code lagMillis} into the snapshots of the accounts that have any.
+     * The cutoff is taken from the database clock, like the {@code created_at} of the entries.
+     */
+    @Modifying
+    @Query(value = """
+            WITH c AS (SELECT now() - CAST(:lagMillis AS double precision) * INTERVAL '1 millisecond' AS cutoff)
+            INSERT INTO balance_snapshot (account_id, balance, as_of)
+            SELECT a.id,
+                   COALESCE(s.balance, a.initial_balance) + COALESCE((SELECT SUM(j.amount) FROM transfer_journal j
+                       WHERE j.account_id = a.id
+                         AND j.created_at >= COALESCE(s.as_of, CAST('-infinity' AS timestamptz))
+                         AND j.created_at < c.cutoff), 0),
+                   c.cutoff
+            FROM account a
+            CROSS JOIN c
+            LEFT JOIN balance_snapshot s ON s.account_id = a.id
+            WHERE s.account_id IS NULL
+               OR (s.as_of < c.cutoff AND EXISTS (SELECT 1 FROM transfer_journal j
+                       WHERE j.account_id = a.id AND j.created_at >= s.as_of AND j.created_at < c.cutoff))
+            ON CONFLICT (account_id) DO UPDATE SET balance = EXCLUDED.balance, as_of = EXCLUDED.as_of
+            """, nativeQuery = true)
+    int foldJournal(@Param("lagMillis") long lagMillis);
+
+    /**
+     * Overwrites the account balance with the journal-derived one. The caller must hold the account row lock
+     * and drain the account's stripes, if any, in the same transaction.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = """
+            UPDATE account a
+            SET balance = COALESCE((SELECT s.balance FROM balance_snapshot s WHERE s.account_id = a.id), a.initial_balance)
+                        + COALESCE((SELECT SUM(j.amount) FROM transfer_journal j
+                            WHERE j.account_id = a.id
+                              AND j.created_at >= COALESCE((SELECT s.as_of FROM balance_snapshot s WHERE s.account_id = a.id),
+                                                           CAST('-infinity' AS timestamptz))), 0),
+                saturated = false,
+                version = version + 1
+            WHERE a.id = :accountId
+            """, nativeQuery = true)
+    int rebuildBalance(@Param("accountId") Long accountId);
+
+    /**
+     * Lists accounts whose stored balance differs from the journal. Reads without locks, so accounts
+     * with transfers in flight may show up transiently.
+     */
+    @Query(value = """
+            SELECT a.id
+            FROM account a
+            LEFT JOIN balance_snapshot s ON s.account_id = a.id
+            WHERE a.balance + COALESCE((SELECT SUM(st.balance) FROM account_stripe st WHERE st.account_id = a.id), 0)
+                  <> COALESCE(s.balance, a.initial_balance) + COALESCE((SELECT SUM(j.amount) FROM transfer_journal j
+                    WHERE j.account_id = a.id
+                      AND j.created_at >= COALESCE(s.as_of, CAST('-infinity' AS timestamptz))), 0)
+            ORDER BY a.id
+            """, nativeQuery = true)
+    List<Long> findDriftedAccountIds();
+}
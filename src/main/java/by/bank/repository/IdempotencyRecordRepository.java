@@ -0,0 +1,48 @@
+package by.bank.repository;
+
+import by.bank.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, IdempotencyRecord.Key> {
+
+    Optional<IdempotencyRecord> findByScopeAndIdempotencyKey(String scope, String idempotencyKey);
+
+    /**
+     * Inserts the record in the caller's transaction. A record of another execution with the same key fails the
+     * statement, and with it the transaction, once that execution has committed.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO idempotency_record (scope, idempotency_key, fingerprint, status, body, created_at)
+            VALUES (:scope, :key, :fingerprint, :status, :body, now())
+            """, nativeQuery = true)
+    void insert(@Param("scope") String scope, @Param("key") String key, @Param("fingerprint") String fingerprint,
+                @Param("status") int status, @Param("body") String body);
+
+    /**
+     * @return 1 if the record was inserted, 0 if the key already has one
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO idempotency_record (scope, idempotency_key, fingerprint, status, body, created_at)
+            VALUES (:scope, :key, :fingerprint, :status, :body, now())
+            ON CONFLICT (scope, idempotency_key) DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("scope") String scope, @Param("key") String key, @Param("fingerprint") String fingerprint,
+                       @Param("status") int status, @Param("body") String body);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM idempotency_record
+            WHERE created_at < now() - CAST(:ageMillis AS double precision) * INTERVAL '1 millisecond'
+            """, nativeQuery = true)
+    int deleteOlderThan(@Param("ageMillis") long ageMillis);
+}
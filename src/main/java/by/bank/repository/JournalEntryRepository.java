@@ -0,0 +1,53 @@
+package by.bank.repository;
+
+import by.bank.entity.JournalEntry;
+import by.bank.entity.JournalEntryType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+
+public interface JournalEntryRepository extends JpaRepository<JournalEntry, Long> {
+
+    /**
+     * Journals a transfer between the accounts of two users with one INSERT ... SELECT,
+     * for callers that move money without loading the accounts.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO transfer_journal (id, account_id, counterparty_account_id, amount, entry_type, created_at)
+            SELECT nextval('transfer_journal_seq'), e.account_id, e.counterparty_account_id, e.amount, e.entry_type, now()
+            FROM account f
+            JOIN account t ON t.user_id = :receiverUserId
+            CROSS JOIN LATERAL (VALUES (f.id, t.id, -CAST(:value AS numeric), 'TRANSFER_DEBIT'),
+                                       (t.id, f.id, CAST(:value AS numeric), 'TRANSFER_CREDIT'))
+                AS e(account_id, counterparty_account_id, amount, entry_type)
+            WHERE f.user_id = :senderUserId
+            """, nativeQuery = true)
+    int insertTransfer(@Param("senderUserId") Long senderUserId, @Param("receiverUserId") Long receiverUserId, @Param("value") BigDecimal value);
+
+    boolean existsByEntryType(JournalEntryType entryType);
+
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryLock(@Param("key") long key);
+
+    /**
+     * Records the balance every account had before journaling started as an {@code OPENING} entry, and drops the
+     * snapshots folded without it. The balance, stripes and journal are read in one statement, and every balance
+     * change journals in its own transaction, so transfers in flight are counted either here or by their own entries.
+     */
+    @Modifying
+    @Query(value = """
+            WITH dropped AS (DELETE FROM balance_snapshot)
+            INSERT INTO transfer_journal (id, account_id, counterparty_account_id, amount, entry_type, created_at)
+            SELECT nextval('transfer_journal_seq'), a.id, NULL,
+                   a.balance + COALESCE((SELECT SUM(st.balance) FROM account_stripe st WHERE st.account_id = a.id), 0)
+                       - a.initial_balance
+                       - COALESCE((SELECT SUM(j.amount) FROM transfer_journal j WHERE j.account_id = a.id), 0),
+                   'OPENING', now()
+            FROM account a
+            """, nativeQuery = true)
+    int insertOpeningEntries();
+}
@@ -0,0 +1,147 @@
+package by.bank.repository;
+
+import by.bank.dto.entityDto.AccountDto;
+import by.bank.dto.entityDto.EmailDataDto;
+import by.bank.dto.entityDto.PhoneDataDto;
+import by.bank.dto.entityDto.UserDto;
+import by.bank.entity.Account;
+import by.bank.repository.specification.UserSpecifications;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Read-only projection of users straight into {@link UserDto}, bypassing entity hydration, the persistence
+ * context and dirty checking. Contacts are aggregated per user with {@code array_agg}, so a page of users
+ * is read with a single statement.
+ * <p>
+ * The account row is read as stored, and the sum of its stripes, if any, alongside it. The caller-supplied
+ * account mapper turns both into the displayed balance.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserReadRepository {
+    private static final String SELECT_USERS = """
+            SELECT u.id, u.name, u.date_of_birth,
+                   a.id AS account_id, a.balance, COALESCE(st.balance, 0) AS striped_balance, a.initial_balance, a.last_accrued_at,
+                   e.ids AS email_ids, e.items AS emails,
+                   p.ids AS phone_ids, p.items AS phones
+            FROM users u
+            LEFT JOIN account a ON a.user_id = u.id
+            LEFT JOIN LATERAL (SELECT SUM(balance) AS balance FROM account_stripe WHERE account_id = a.id) st ON true
+            LEFT JOIN LATERAL (SELECT array_agg(id ORDER BY id) AS ids, array_agg(email ORDER BY id) AS items
+                               FROM email_data WHERE user_id = u.id) e ON true
+            LEFT JOIN LATERAL (SELECT array_agg(id ORDER BY id) AS ids, array_agg(phone ORDER BY id) AS items
+                               FROM phone_data WHERE user_id = u.id) p ON true
+            """;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * @param accountMapper maps the detached account and the sum of its stripes
+     * @return the users with the given ids in the order of {@code ids}
+     */
+    public List<UserDto> findAllByIds(List<Long> ids, BiFunction<Account, BigDecimal, AccountDto> accountMapper) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, UserDto> users = jdbcTemplate.query(SELECT_USERS + "WHERE u.id IN (:ids)", Map.of("ids", ids),
+                        (rs, rowNum) -> mapUser(rs, accountMapper)).stream()
+                .collect(Collectors.toMap(UserDto::getId, Function.identity()));
+        return ids.stream().map(users::get).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Passes every user matching the filters to {@code consumer} in id order, reading them through one cursor of
+     * {@code fetchSize} rows. The filters are those of {@link UserSpecifications#buildUserSpecification}, written
+     * as SQL so that the joined rows are streamed by a single statement. Must be called inside a transaction.
+     *
+     * @param accountMapper maps the detached account and the sum of its stripes
+     */
+    public void streamUsers(LocalDate dateOfBirth, String phone, String name, String email, int fetchSize,
+                            BiFunction<Account, BigDecimal, AccountDto> accountMapper, Consumer<UserDto> consumer) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (dateOfBirth != null) {
+            conditions.add("u.date_of_birth > ?");
+            args.add(Date.valueOf(dateOfBirth));
+        }
+        if (phone != null) {
+            conditions.add("EXISTS (SELECT 1 FROM phone_data WHERE user_id = u.id AND phone = ?)");
+            args.add(phone);
+        }
+        if (name != null) {
+            conditions.add("u.name LIKE ? ESCAPE '\\'");
+            args.add(UserSpecifications.escapeLike(name) + "%");
+        }
+        if (email != null) {
+            conditions.add("EXISTS (SELECT 1 FROM email_data WHERE user_id = u.id AND email = ?)");
+            args.add(email);
+        }
+        String sql = SELECT_USERS + (conditions.isEmpty() ? "" : "WHERE " + String.join(" AND ", conditions) + " ") + "ORDER BY u.id";
+        jdbcTemplate.getJdbcTemplate().query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(fetchSize);
+            new ArgumentPreparedStatementSetter(args.toArray()).setValues(statement);
+            return statement;
+        }, (RowCallbackHandler) rs -> consumer.accept(mapUser(rs, accountMapper)));
+    }
+
+    private static UserDto mapUser(ResultSet rs, BiFunction<Account, BigDecimal, AccountDto> accountMapper) throws SQLException {
+        Date dateOfBirth = rs.getDate("date_of_birth");
+        Account account = mapAccount(rs);
+        return new UserDto(rs.getLong("id"), rs.getString("name"), dateOfBirth == null ? null : dateOfBirth.toLocalDate(),
+                contacts(rs, "email_ids", "emails", EmailDataDto::new), account == null ? null : accountMapper.apply(account, rs.getBigDecimal("striped_balance")),
+                contacts(rs, "phone_ids", "phones", PhoneDataDto::new));
+    }
+
+    /**
+     * Builds a detached account, as stored, for the caller to resolve.
+     */
+    private static Account mapAccount(ResultSet rs) throws SQLException {
+        long accountId = rs.getLong("account_id");
+        if (rs.wasNull()) {
+            return null;
+        }
+        Account account = new Account();
+        account.setId(accountId);
+        account.setBalance(rs.getBigDecimal("balance"));
+        account.setInitialBalance(rs.getBigDecimal("initial_balance"));
+        Timestamp lastAccruedAt = rs.getTimestamp("last_accrued_at");
+        account.setLastAccruedAt(lastAccruedAt == null ? null : lastAccruedAt.toInstant());
+        return account;
+    }
+
+    private static <T> List<T> contacts(ResultSet rs, String idsColumn, String itemsColumn, BiFunction<Long, String, T> factory) throws SQLException {
+        Array ids = rs.getArray(idsColumn);
+        List<T> contacts = new ArrayList<>();
+        if (ids == null) {
+            return contacts;
+        }
+        Long[] idValues = (Long[]) ids.getArray();
+        String[] items = (String[]) rs.getArray(itemsColumn).getArray();
+        for (int i = 0; i < idValues.length; i++) {
+            contacts.add(factory.apply(idValues[i], items[i]));
+        }
+        return contacts;
+    }
+}
@@ -0,0 +1,22 @@
+package by.bank.repository;
+
+import by.bank.dto.UserSortOrder;
+import by.bank.entity.User;
+import by.bank.repository.specification.UserKeyset;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface UserSearchRepository {
+
+    /**
+     * Selects only the ids of a page of matching users, without hydrating entities and without a count query.
+     */
+    List<Long> findIds(Specification<User> specification, Sort sort, long offset, int limit);
+
+    /**
+     * Selects the ids of the first {@code limit} matching users in keyset order, see {@link UserKeyset#orders}.
+     */
+    List<Long> findIdsInKeysetOrder(Specification<User> specification, UserSortOrder order, int limit);
+}
@@ -0,0 +1,54 @@
+package by.bank.repository;
+
+import by.bank.dto.UserSortOrder;
+import by.bank.entity.User;
+import by.bank.repository.specification.UserKeyset;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.List;
+import java.util.function.BiFunction;
+
+public class UserSearchRepositoryImpl implements UserSearchRepository {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Long> findIds(Specification<User> specification, Sort sort, long offset, int limit) {
+        return findIds(specification, (root, cb) -> QueryUtils.toOrders(sort, root, cb), offset, limit);
+    }
+
+    @Override
+    public List<Long> findIdsInKeysetOrder(Specification<User> specification, UserSortOrder order, int limit) {
+        return findIds(specification, (root, cb) -> UserKeyset.orders(order, root, cb), 0, limit);
+    }
+
+    private List<Long> findIds(Specification<User> specification, BiFunction<Root<User>, CriteriaBuilder, List<Order>> orders,
+                               long offset, int limit) {
+        return query(specification, orders)
+                .setFirstResult(Math.toIntExact(offset))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private TypedQuery<Long> query(Specification<User> specification, BiFunction<Root<User>, CriteriaBuilder, List<Order>> orders) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<User> root = query.from(User.class);
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(root.get("id")).orderBy(orders.apply(root, cb));
+        return entityManager.createQuery(query);
+    }
+}
@@ -0,0 +1,92 @@
+package by.bank.repository.specification;
+
+import by.bank.dto.UserSortOrder;
+import by.bank.dto.entityDto.UserDto;
+import by.bank.entity.User;
+import by.bank.exception.InvalidCursorException;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.Value;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Position after the last user of a keyset page, ordered by the sort key with nulls last and then by id.
+ * Clients receive it as an opaque URL-safe cursor.
+ */
+@Value
+public class UserKeyset {
+    /**
+     * Names are ordered by code point rather than by the database's default collation, which is the order
+     * {@link by.bank.service.UserSearchIndex} keeps, so a cursor marks the same position on both paths.
+     */
+    public static final String NAME_COLLATION = "ucs_basic";
+    UserSortOrder order;
+    /**
+     * Sort key of the last user as a string, {@code null} if the user had none.
+     */
+    String value;
+    Long id;
+
+    public static UserKeyset after(UserSortOrder order, UserDto user) {
+        Object value = order == UserSortOrder.NAME ? user.getName() : user.getDateOfBirth();
+        return new UserKeyset(order, value == null ? null : value.toString(), user.getId());
+    }
+
+    public static List<Order> orders(UserSortOrder order, Root<User> root, CriteriaBuilder cb) {
+        return List.of(((HibernateCriteriaBuilder) cb).asc(key(order, root, cb), false), cb.asc(root.get("id")));
+    }
+
+    public String encode() {
+        String raw = order.name() + "|" + id + "|" + (value == null ? "" : "v" + value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static UserKeyset decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 3);
+            UserSortOrder order = UserSortOrder.valueOf(parts[0]);
+            String value = parts[2].isEmpty() ? null : parts[2].substring(1);
+            if (value != null && order == UserSortOrder.DATE_OF_BIRTH) {
+                LocalDate.parse(value);
+            }
+            return new UserKeyset(order, value, Long.valueOf(parts[1]));
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Matches the users that come after this position in {@link #orders} order.
+     */
+    public Specification<User> toSpecification() {
+        return (root, query, cb) -> order == UserSortOrder.NAME
+                ? after(root, cb, value)
+                : after(root, cb, value == null ? null : LocalDate.parse(value));
+    }
+
+    private <T extends Comparable<? super T>> Predicate after(Root<User> root, CriteriaBuilder cb, T lastValue) {
+        Expression<T> key = key(order, root, cb);
+        Predicate laterId = cb.greaterThan(root.get("id"), id);
+        if (lastValue == null) {
+            return cb.and(cb.isNull(key), laterId);
+        }
+        return cb.or(cb.greaterThan(key, lastValue), cb.and(cb.equal(key, lastValue), laterId), cb.isNull(key));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Expression<T> key(UserSortOrder order, Root<User> root, CriteriaBuilder cb) {
+        Expression<T> key = root.get(order.getAttribute());
+        return order == UserSortOrder.NAME
+                ? (Expression<T>) ((HibernateCriteriaBuilder) cb).collate((Expression<String>) key, NAME_COLLATION)
+                : key;
+    }
+}
@@ -1,7 +1,13 @@
 package by.bank.repository.specification;
 
+import by.bank.entity.EmailData;
+import by.bank.entity.PhoneData;
 import by.bank.entity.User;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.time.LocalDate;
@@ -9,9 +15,15 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class UserSpecifications {
+    private static final char LIKE_ESCAPE = '\\';
+
     private UserSpecifications() {
     }
 
+    /**
+     * Phones and emails are matched with correlated {@code EXISTS} subqueries rather than joins, so a user
+     * with several contacts is returned once and the lookup goes through the unique contact indexes.
+     */
     public static Specification<User> buildUserSpecification(LocalDate dateOfBirth, String phone, String name, String email) {
         return (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
@@ -19,16 +31,31 @@ public class UserSpecifications {
                 predicates.add(cb.greaterThan(root.get("dateOfBirth"), dateOfBirth));
             }
             if (phone != null) {
-                predicates.add(cb.equal(root.get("phone"), phone));
+                predicates.add(hasContact(root, query, cb, PhoneData.class, "phone", phone));
             }
             if (name != null) {
-                predicates.add(cb.like(root.get("name"), name + "%"));
+                predicates.add(cb.like(root.get("name"), escapeLike(name) + "%", LIKE_ESCAPE));
             }
             if (email != null) {
-                predicates.add(cb.equal(root.get("email"), email));
+                predicates.add(hasContact(root, query, cb, EmailData.class, "email", email));
             }
             return cb.and(predicates.toArray(new Predicate[0]));
         };
     }
-}
 
+    private static <T> Predicate hasContact(Root<User> root, CriteriaQuery<?> query, CriteriaBuilder cb,
+                                            Class<T> contactType, String attribute, String value) {
+        Subquery<Integer> subquery = query.subquery(Integer.class);
+        Root<T> contact = subquery.from(contactType);
+        subquery.select(cb.literal(1))
+                .where(cb.equal(contact.get("user"), root), cb.equal(contact.get(attribute), value));
+        return cb.exists(subquery);
+    }
+
+    /**
+     * Escapes LIKE wildcards, with a backslash as the escape character, so that the name is matched as a literal prefix.
+     */
+    public static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -1,70 +1,165 @@
 package by.bank.service;
 
+import by.bank.config.AccrualMode;
 import by.bank.config.JwtUtil;
+import by.bank.config.TransferMode;
+import by.bank.dto.IdempotentResponse;
 import by.bank.dto.TransferDto;
+import by.bank.dto.TransferResultDto;
 import by.bank.entity.Account;
+import by.bank.entity.JournalEntry;
 import by.bank.exception.DataPersistingException;
 import by.bank.exception.InsufficientFundsException;
 import by.bank.repository.AccountRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.CannotAcquireLockException;
-import org.springframework.dao.PessimisticLockingFailureException;
-import org.springframework.orm.ObjectOptimisticLockingFailureException;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.support.RetryTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.security.auth.login.AccountNotFoundException;
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class AccountService {
     private final AccountRepository accountRepository;
+    private final TransferProcessor transferProcessor;
+    private final RetryTemplate retryTemplate;
+    private final IdempotencyService idempotencyService;
+    private final JournalService journalService;
+    private final AccrualJobService accrualJobService;
+    private final ChunkedAccrualService chunkedAccrualService;
+    private final AccrualCoordinator accrualCoordinator;
+    private final TransactionTemplate transactionTemplate;
     private final JwtUtil jwtUtil;
-    private static final BigDecimal MULTIPLIER = new BigDecimal("1.1");
-    private static final BigDecimal MAX_PERCENTAGE = new BigDecimal("2.07");
+    @Value("${bank.transfer.mode:LOCK_ORDERED}")
+    private TransferMode transferMode;
+    @Value("${bank.interest.mode:ENTITY_LOOP}")
+    private AccrualMode accrualMode;
+    public static final BigDecimal MULTIPLIER = new BigDecimal("1.1");
+    public static final BigDecimal MAX_PERCENTAGE = new BigDecimal("2.07");
 
 
-    @Retryable(retryFor = {ObjectOptimisticLockingFailureException.class, PessimisticLockingFailureException.class, CannotAcquireLockException.class}, maxAttempts = 5, backoff = @Backoff(delay = 100, multiplier = 2))
-    @Transactional(isolation = Isolation.SERIALIZABLE, timeout = 30)
     public void transfer(TransferDto transferDto, String token) throws AccountNotFoundException {
+        transfer(Long.valueOf(jwtUtil.extractUserId(token)), transferDto);
+    }
+
+    /**
+     * Executes the transfer at most once per {@code idempotencyKey} of the sender. Repeated submissions
+     * get the stored outcome of the first one; failures that may succeed on retry release the key.
+     * A successful transfer records its outcome in Postgres in its own transaction, so once it has committed
+     * no later submission can execute it again, whatever happens to the Redis claim.
+     */
+    public IdempotentResponse transfer(TransferDto transferDto, String token, String idempotencyKey) throws AccountNotFoundException {
         Long userId = Long.valueOf(jwtUtil.extractUserId(token));
-        Account accountFrom = accountRepository.findByUserId(userId).orElseThrow(() -> {
-            log.error("Sender account not found for user ID: {}", userId);
-            return new AccountNotFoundException("Sender account not found");
-        });
-        Account accountTo = accountRepository.findByUserId(transferDto.getTransferTo()).orElseThrow(() -> {
-            log.error("Receiver account not found for user ID: {}", transferDto.getTransferTo());
-            return new AccountNotFoundException("Receiver account not found");
-        });
-        if (accountFrom.getBalance().compareTo(transferDto.getValue()) < 0) {
-            log.warn("Insufficient funds for transfer: User {} balance {} < transfer amount {}", userId, accountFrom.getBalance(), transferDto.getValue());
-            throw new InsufficientFundsException("Insufficient funds");
+        String scope = "transfer:" + userId;
+        String fingerprint = transferDto.getTransferTo() + "/" + transferDto.getValue().stripTrailingZeros().toPlainString();
+        Optional<IdempotentResponse> stored = idempotencyService.begin(scope, idempotencyKey, fingerprint);
+        if (stored.isPresent()) {
+            return stored.get();
         }
+        IdempotentResponse outcome = new IdempotentResponse(HttpStatus.OK.value(), "");
         try {
-            accountFrom.setBalance(accountFrom.getBalance().subtract(transferDto.getValue()));
-            accountTo.setBalance(accountTo.getBalance().add(transferDto.getValue()));
-            accountRepository.saveAll(List.of(accountFrom, accountTo));
+            transfer(userId, transferDto, () -> idempotencyService.record(scope, idempotencyKey, fingerprint, outcome));
+        } catch (InsufficientFundsException e) {
+            IdempotentResponse rejected = new IdempotentResponse(HttpStatus.UNPROCESSABLE_ENTITY.value(), e.getMessage());
+            return idempotencyService.complete(scope, idempotencyKey, fingerprint,
+                    idempotencyService.recordIfAbsent(scope, idempotencyKey, fingerprint, rejected));
+        } catch (DataIntegrityViolationException e) {
+            // A duplicate whose claim had expired committed first, and this execution rolled back on its record
+            Optional<IdempotentResponse> recorded = idempotencyService.recorded(scope, idempotencyKey, fingerprint);
+            if (recorded.isEmpty()) {
+                idempotencyService.release(scope, idempotencyKey, fingerprint);
+                throw e;
+            }
+            return idempotencyService.complete(scope, idempotencyKey, fingerprint, recorded.get());
+        } catch (AccountNotFoundException | RuntimeException e) {
+            idempotencyService.release(scope, idempotencyKey, fingerprint);
+            throw e;
+        }
+        return idempotencyService.complete(scope, idempotencyKey, fingerprint, outcome);
+    }
 
-            log.info("Transfer successful. New balances - From: {}, To: {}", accountFrom.getBalance(), accountTo.getBalance());
-        } catch (Exception e) {
-            log.error("Error processing transfer from {} to {}: {}", userId, transferDto.getTransferTo(), e.getMessage());
-            throw new DataPersistingException("Error processing transfer", e);
+    public void transfer(Long userId, TransferDto transferDto) throws AccountNotFoundException {
+        transfer(userId, transferDto, () -> {
+        });
+    }
+
+    /**
+     * Runs the transfer and {@code inTransaction} in one transaction, retrying both on version conflicts in
+     * {@link TransferMode#OPTIMISTIC} mode.
+     */
+    private void transfer(Long userId, TransferDto transferDto, Runnable inTransaction) throws AccountNotFoundException {
+        if (transferMode != TransferMode.OPTIMISTIC) {
+            transferProcessor.transfer(transferMode, userId, transferDto, inTransaction);
+            return;
         }
+        retryTemplate.execute((RetryCallback<Void, AccountNotFoundException>) context -> {
+            if (context.getRetryCount() > 0) {
+                log.debug("Retrying transfer from user {} after version conflict, attempt {}", userId, context.getRetryCount() + 1);
+            }
+            transferProcessor.transfer(transferMode, userId, transferDto, inTransaction);
+            return null;
+        });
+    }
 
+    public List<TransferResultDto> transferBatch(List<TransferDto> transfers, String token) throws AccountNotFoundException {
+        Long userId = Long.valueOf(jwtUtil.extractUserId(token));
+        return transferProcessor.transferBatch(userId, transfers);
     }
 
-    @Scheduled(fixedRate = 30000)
-    @Transactional
+    /**
+     * Accrues one tick on the nodes that win it, see {@link AccrualCoordinator}. Runs outside a transaction:
+     * the batch job and the chunked mode commit per chunk, the other modes run in one transaction each.
+     */
+    @Scheduled(fixedRateString = "${bank.interest.tick:30000}")
+    public void accrueScheduledTick() {
+        if (accrualMode == AccrualMode.LAZY) {
+            log.trace("Skipping scheduled accrual, balances accrue lazily");
+            return;
+        }
+        accrualCoordinator.runTick(accrualMode == AccrualMode.CHUNKED,
+                accrualMode == AccrualMode.SET_BASED || accrualMode == AccrualMode.ENTITY_LOOP, this::accrue);
+    }
+
+    /**
+     * Accrues one tick on this node regardless of the other nodes.
+     */
     public void updateBalances() {
-        List<Account> accounts = accountRepository.findAll();
+        accrue(0, 1);
+    }
+
+    private void accrue(int partition, int partitions) {
+        switch (accrualMode) {
+            case BATCH_JOB -> accrualJobService.run();
+            case CHUNKED -> chunkedAccrualService.accrue(partition, partitions);
+            case SET_BASED -> transactionTemplate.executeWithoutResult(status -> accrueSetBased());
+            case LAZY -> log.trace("Skipping accrual, balances accrue lazily");
+            default -> transactionTemplate.executeWithoutResult(status -> accrueEntityLoop());
+        }
+    }
+
+    private void accrueSetBased() {
+        try {
+            int updated = accountRepository.accrueInterest(MULTIPLIER, MAX_PERCENTAGE);
+            log.debug("Accrued interest on {} accounts", updated);
+        } catch (Exception e) {
+            log.error("Error accruing interest: {}", e.getMessage());
+            throw new DataPersistingException("Error updating balance", e);
+        }
+    }
+
+    private void accrueEntityLoop() {
+        List<Account> accounts = accountRepository.findAllBySaturatedFalse();
         for (Account account : accounts) {
             try {
                 BigDecimal currentBalance = account.getBalance();
@@ -76,8 +171,13 @@ public class AccountService {
                         newBalance = maxBalance;
                     }
                     account.setBalance(newBalance);
+                    account.setSaturated(newBalance.compareTo(maxBalance) >= 0);
                     accountRepository.save(account);
+                    journalService.record(List.of(JournalEntry.interest(account.getId(), newBalance.subtract(currentBalance))));
                     log.trace("Updated balance for account {}: {} -> {}", account.getId(), currentBalance, newBalance);
+                } else {
+                    account.setSaturated(true);
+                    accountRepository.save(account);
                 }
             } catch (Exception e) {
                 log.error("Error updating balance for account {}: {}", account.getId(), e.getMessage());
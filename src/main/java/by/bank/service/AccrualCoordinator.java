@@ -0,0 +1,101 @@
+package by.bank.service;
+
+import by.bank.repository.AccrualLeaseRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Makes scheduled accrual cluster-safe without extra infrastructure. Every node fires the schedule, but a
+ * partition of a tick only runs on the node that holds the partition's Postgres advisory lock and claims the
+ * tick in {@code accrual_lease}; the lock keeps runs from overlapping, the lease keeps a tick from running twice.
+ * A tick whose task fails and rolls back as a whole is released again, so the next node or schedule firing
+ * within the tick retries it; a task that commits in parts keeps its tick, as running it again would accrue
+ * the committed parts twice.
+ * With several partitions, nodes accrue different slices of the account id space in parallel.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AccrualCoordinator {
+    /**
+     * First key of the two-key advisory lock, the second one being the partition number.
+     */
+    private static final int LOCK_CLASS = "balance-accrual".hashCode();
+    private static final String HOLDER = ManagementFactory.getRuntimeMXBean().getName();
+    private final JdbcTemplate jdbcTemplate;
+    private final AccrualLeaseRepository accrualLeaseRepository;
+    @Value("${bank.interest.tick:30000}")
+    private long tickMillis;
+    @Value("${bank.interest.cluster.partitions:1}")
+    private int partitions;
+
+    @FunctionalInterface
+    public interface PartitionTask {
+        void run(int partition, int partitions);
+    }
+
+    /**
+     * Runs the task for every partition of the current tick that no node has run yet.
+     *
+     * @param partitioned whether the task can accrue a single partition; otherwise it runs once as partition 0 of 1
+     * @param atomic      whether the task runs in a single transaction, so that a failed run changed nothing
+     */
+    public void runTick(boolean partitioned, boolean atomic, PartitionTask task) {
+        long tick = System.currentTimeMillis() / tickMillis;
+        int count = partitioned ? partitions : 1;
+        for (int partition = 0; partition < count; partition++) {
+            runPartition(tick, partition, count, atomic, task);
+        }
+    }
+
+    private void runPartition(long tick, int partition, int count, boolean atomic, PartitionTask task) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            if (!advisoryLock(connection, "SELECT pg_try_advisory_lock(?, ?)", partition)) {
+                log.debug("Accrual partition {} is running on another node", partition);
+                return null;
+            }
+            try {
+                if (accrualLeaseRepository.claim(partition, tick, HOLDER) == 0) {
+                    log.debug("Accrual tick {} of partition {} has already run", tick, partition);
+                    return null;
+                }
+                try {
+                    task.run(partition, count);
+                } catch (RuntimeException e) {
+                    if (atomic) {
+                        // Still under the advisory lock, so no other node has started the tick meanwhile
+                        accrualLeaseRepository.release(partition, tick, HOLDER);
+                    }
+                    throw e;
+                }
+                log.debug("Accrued tick {} of partition {}/{}", tick, partition, count);
+            } finally {
+                advisoryLock(connection, "SELECT pg_advisory_unlock(?, ?)", partition);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Session-level advisory locks belong to the connection, so lock and unlock go through the same one.
+     */
+    private boolean advisoryLock(Connection connection, String sql, int partition) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, LOCK_CLASS);
+            statement.setInt(2, partition);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package by.bank.service;
+
+import by.bank.batch.AccrualJobConfig;
+import by.bank.exception.DataPersistingException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionException;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.stereotype.Service;
+
+/**
+ * Launches the balance accrual job. A run that failed is restarted with its original parameters before a new
+ * one is started, so every account that was left out by the failure accrues exactly once for that run.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AccrualJobService {
+    private final JobLauncher jobLauncher;
+    private final JobExplorer jobExplorer;
+    private final Job balanceAccrualJob;
+
+    public void run() {
+        JobParameters parameters = failedRunParameters();
+        if (parameters != null) {
+            log.warn("Restarting failed balance accrual run {}", parameters);
+        } else {
+            parameters = new JobParametersBuilder()
+                    .addLong("startedAt", System.currentTimeMillis())
+                    .toJobParameters();
+        }
+        try {
+            JobExecution execution = jobLauncher.run(balanceAccrualJob, parameters);
+            log.info("Balance accrual run {} finished with {}", execution.getJobInstance().getInstanceId(), execution.getStatus());
+        } catch (JobExecutionException e) {
+            log.error("Error launching balance accrual job: {}", e.getMessage());
+            throw new DataPersistingException("Error updating balance", e);
+        }
+    }
+
+    private JobParameters failedRunParameters() {
+        JobInstance lastInstance = jobExplorer.getLastJobInstance(AccrualJobConfig.JOB_NAME);
+        if (lastInstance == null) {
+            return null;
+        }
+        JobExecution lastExecution = jobExplorer.getLastJobExecution(lastInstance);
+        return lastExecution != null && lastExecution.getStatus() == BatchStatus.FAILED ? lastExecution.getJobParameters() : null;
+    }
+}
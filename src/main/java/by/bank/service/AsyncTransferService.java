@@ -0,0 +1,183 @@
+package by.bank.service;
+
+import by.bank.config.JwtUtil;
+import by.bank.dto.AsyncTransferDto;
+import by.bank.dto.TransferDto;
+import by.bank.dto.TransferStatus;
+import by.bank.entity.AsyncTransfer;
+import by.bank.exception.InsufficientFundsException;
+import by.bank.exception.ResourceNotFoundException;
+import by.bank.exception.TransferQueueFullException;
+import by.bank.repository.AsyncTransferRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.security.auth.login.AccountNotFoundException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accepts transfers without holding the request thread. Transfers are sharded by sender onto
+ * single-threaded executors with bounded queues: transfers of one sender run one after another
+ * without competing for the sender's row lock, and a full shard rejects new work instead of
+ * letting requests pile up.
+ * <p>
+ * A transfer is stored in {@code async_transfer} before it is acknowledged, so its status can be read on any node.
+ * A transfer left queued by a node that stopped or crashed is picked up by {@link #recover()} on any node; a worker
+ * claims a transfer by moving it from {@code QUEUED} to {@code PROCESSING}, so it is executed at most once.
+ * A transfer that stays {@code PROCESSING} past {@code bank.transfer.async.processing-timeout} is marked failed,
+ * as its node stopped without recording whether the transfer committed.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AsyncTransferService {
+    private static final int RECOVERY_BATCH = 500;
+    private static final int MESSAGE_LENGTH = 500;
+    private static final List<String> FINISHED_STATUSES = List.of(TransferStatus.COMPLETED.name(),
+            TransferStatus.INSUFFICIENT_FUNDS.name(), TransferStatus.ACCOUNT_NOT_FOUND.name(), TransferStatus.FAILED.name());
+    private final AccountService accountService;
+    private final AsyncTransferRepository asyncTransferRepository;
+    private final JwtUtil jwtUtil;
+    @Value("${bank.transfer.async.shards:4}")
+    private int shardCount;
+    @Value("${bank.transfer.async.queue-capacity:1000}")
+    private int queueCapacity;
+    @Value("${bank.transfer.async.retention:10m}")
+    private Duration retention;
+    @Value("${bank.transfer.async.recover-after:1m}")
+    private Duration recoverAfter;
+    @Value("${bank.transfer.async.processing-timeout:10m}")
+    private Duration processingTimeout;
+
+    /**
+     * Transfers queued on this node, so that recovery does not queue them a second time.
+     */
+    private final Set<UUID> enqueued = ConcurrentHashMap.newKeySet();
+    private ExecutorService[] shards;
+
+    @PostConstruct
+    public void init() {
+        shards = new ExecutorService[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            String threadName = "transfer-shard-" + i;
+            shards[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> new Thread(runnable, threadName), new ThreadPoolExecutor.AbortPolicy());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ExecutorService shard : shards) {
+            shard.shutdown();
+        }
+        for (ExecutorService shard : shards) {
+            if (!shard.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Transfer shard did not drain in time, {} queued transfers left for recovery", shard.shutdownNow().size());
+            }
+        }
+    }
+
+    public AsyncTransferDto submit(TransferDto transferDto, String token) {
+        Long userId = Long.valueOf(jwtUtil.extractUserId(token));
+        UUID id = UUID.randomUUID();
+        asyncTransferRepository.insertQueued(id, userId, transferDto.getTransferTo(), transferDto.getValue());
+        if (!enqueue(id, userId, transferDto.getTransferTo(), transferDto.getValue())) {
+            asyncTransferRepository.deleteById(id);
+            log.warn("Transfer queue is full, rejecting transfer from user {}", userId);
+            throw new TransferQueueFullException("Too many pending transfers, retry later");
+        }
+        return new AsyncTransferDto(id, transferDto.getTransferTo(), transferDto.getValue(), TransferStatus.QUEUED, null);
+    }
+
+    public AsyncTransferDto getTransfer(UUID id, String token) {
+        Long userId = Long.valueOf(jwtUtil.extractUserId(token));
+        AsyncTransfer transfer = asyncTransferRepository.findById(id)
+                .filter(found -> found.getUserId().equals(userId))
+                .orElseThrow(() -> new ResourceNotFoundException("Transfer not found"));
+        return new AsyncTransferDto(transfer.getId(), transfer.getTransferTo(), transfer.getAmount(), transfer.getStatus(), transfer.getMessage());
+    }
+
+    /**
+     * Queues transfers that have waited longer than {@code bank.transfer.async.recover-after}, which includes
+     * those accepted by a node that has stopped, and fails transfers whose processing node has stopped.
+     */
+    @Scheduled(fixedRateString = "${bank.transfer.async.recovery-interval:30000}")
+    public void recover() {
+        int failed = asyncTransferRepository.failProcessingOlderThan(processingTimeout.toMillis(), "Processing was interrupted, outcome unknown");
+        if (failed > 0) {
+            log.warn("Marked {} interrupted async transfers as failed", failed);
+        }
+        List<AsyncTransfer> stale = asyncTransferRepository.findOlderThan(TransferStatus.QUEUED.name(), recoverAfter.toMillis(), RECOVERY_BATCH);
+        int recovered = 0;
+        for (AsyncTransfer transfer : stale) {
+            if (!enqueued.contains(transfer.getId())
+                    && enqueue(transfer.getId(), transfer.getUserId(), transfer.getTransferTo(), transfer.getAmount())) {
+                recovered++;
+            }
+        }
+        if (recovered > 0) {
+            log.info("Recovered {} queued async transfers", recovered);
+        }
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void evictFinishedTransfers() {
+        asyncTransferRepository.deleteOlderThan(FINISHED_STATUSES, retention.toMillis());
+    }
+
+    private boolean enqueue(UUID id, Long userId, Long transferTo, BigDecimal value) {
+        if (!enqueued.add(id)) {
+            return false;
+        }
+        try {
+            shards[Math.floorMod(userId.hashCode(), shards.length)].execute(() -> process(id, userId, new TransferDto(transferTo, value)));
+            return true;
+        } catch (RejectedExecutionException e) {
+            enqueued.remove(id);
+            return false;
+        }
+    }
+
+    private void process(UUID id, Long userId, TransferDto request) {
+        try {
+            if (asyncTransferRepository.transition(id, TransferStatus.QUEUED.name(), TransferStatus.PROCESSING.name(), null) == 0) {
+                return;
+            }
+            try {
+                accountService.transfer(userId, request);
+                finish(id, TransferStatus.COMPLETED, null);
+            } catch (InsufficientFundsException e) {
+                finish(id, TransferStatus.INSUFFICIENT_FUNDS, e.getMessage());
+            } catch (AccountNotFoundException e) {
+                finish(id, TransferStatus.ACCOUNT_NOT_FOUND, e.getMessage());
+            } catch (Exception e) {
+                log.error("Error processing async transfer {} from user {}: {}", id, userId, e.getMessage());
+                finish(id, TransferStatus.FAILED, e.getMessage());
+            }
+        } catch (Exception e) {
+            log.error("Error updating status of async transfer {}: {}", id, e.getMessage());
+        } finally {
+            enqueued.remove(id);
+        }
+    }
+
+    private void finish(UUID id, TransferStatus status, String message) {
+        String stored = message == null || message.length() <= MESSAGE_LENGTH ? message : message.substring(0, MESSAGE_LENGTH);
+        asyncTransferRepository.transition(id, TransferStatus.PROCESSING.name(), status.name(), stored);
+    }
+}
@@ -0,0 +1,94 @@
+package by.bank.service;
+
+import by.bank.repository.AccountRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Interest accrual that never makes transfers wait. Accounts are accrued in small chunks, each committed on
+ * its own, and rows currently locked by a transfer are skipped and re-queued for a later pass of the same
+ * tick. Only the last pass waits for the locks, so every unsaturated account accrues exactly once per tick.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChunkedAccrualService {
+    private final AccountRepository accountRepository;
+    private final TransactionTemplate transactionTemplate;
+    @Value("${bank.interest.chunked.chunk-size:200}")
+    private int chunkSize;
+    @Value("${bank.interest.chunked.passes:3}")
+    private int passes;
+    @Value("${bank.interest.chunked.requeue-delay:100ms}")
+    private Duration requeueDelay;
+
+    /**
+     * Accrues the accounts whose id falls into the given partition, {@code id % partitions == partition}.
+     */
+    public void accrue(int partition, int partitions) {
+        List<Long> requeued = new ArrayList<>();
+        long afterId = 0;
+        List<Long> candidates;
+        while (!(candidates = accountRepository.findAccrualCandidates(afterId, partition, partitions, chunkSize)).isEmpty()) {
+            afterId = candidates.get(candidates.size() - 1);
+            requeued.addAll(accrueSkippingLocked(candidates));
+        }
+
+        for (int pass = 2; pass < passes && !requeued.isEmpty(); pass++) {
+            if (!pause()) {
+                break;
+            }
+            log.debug("Accrual pass {} over {} skipped accounts", pass, requeued.size());
+            List<Long> skipped = new ArrayList<>();
+            for (List<Long> chunk : chunks(requeued)) {
+                skipped.addAll(accrueSkippingLocked(chunk));
+            }
+            requeued = skipped;
+        }
+
+        if (!requeued.isEmpty()) {
+            log.debug("Final accrual pass waits for locks of {} accounts", requeued.size());
+            for (List<Long> chunk : chunks(requeued)) {
+                transactionTemplate.executeWithoutResult(status ->
+                        accountRepository.accrueInterestForIds(chunk, AccountService.MULTIPLIER, AccountService.MAX_PERCENTAGE));
+            }
+        }
+    }
+
+    /**
+     * @return the ids of the chunk that were skipped because another transaction held their lock
+     */
+    private List<Long> accrueSkippingLocked(List<Long> chunk) {
+        List<Long> locked = transactionTemplate.execute(status ->
+                accountRepository.accrueInterestSkipLocked(chunk, AccountService.MULTIPLIER, AccountService.MAX_PERCENTAGE));
+        Set<Long> processed = new HashSet<>(locked);
+        return chunk.stream().filter(id -> !processed.contains(id)).toList();
+    }
+
+    private List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            chunks.add(ids.subList(from, Math.min(from + chunkSize, ids.size())));
+        }
+        return chunks;
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(requeueDelay.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package by.bank.service;
+
+import by.bank.entity.Account;
+import by.bank.entity.AccountStripe;
+import by.bank.repository.AccountRepository;
+import by.bank.repository.AccountStripeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Striping of designated high fan-in accounts. Credits to a hot account land on one of its stripe rows
+ * instead of the account row, so concurrent incoming transfers do not queue on a single row lock.
+ * Stripes are folded back into the account by {@link #consolidate()} and on demand when the account pays.
+ * <p>
+ * Lock order: a transaction locks all account rows it needs before touching any stripe, and touches
+ * stripes in account id order. Stripes are only drained while the owning account row is locked.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HotAccountService {
+    private final AccountRepository accountRepository;
+    private final AccountStripeRepository accountStripeRepository;
+    private final TransactionTemplate transactionTemplate;
+    @Value("${bank.striping.user-ids:}")
+    private List<Long> hotUserIds;
+    @Value("${bank.striping.stripes:8}")
+    private int stripes;
+
+    /**
+     * Account id of every hot account by user id.
+     */
+    private final Map<Long, Long> hotAccounts = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        if (hotUserIds.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Account account : accountRepository.findAllByUserIdIn(hotUserIds)) {
+                accountStripeRepository.createStripes(account.getId(), stripes);
+                hotAccounts.put(account.getUser().getId(), account.getId());
+            }
+        });
+        log.info("Striping {} hot accounts across {} stripes each", hotAccounts.size(), stripes);
+    }
+
+    /**
+     * @return the account id if the user's account is striped, otherwise {@code null}
+     */
+    public Long hotAccountId(Long userId) {
+        return hotAccounts.get(userId);
+    }
+
+    public boolean isStriped(Long accountId) {
+        return hotAccounts.containsValue(accountId);
+    }
+
+    /**
+     * Sum of the account's stripes read without locks. As stripes only shrink while the account row is locked,
+     * this is a lower bound of what {@link #drain} returns for a caller holding that lock.
+     */
+    public BigDecimal stripedBalance(Long accountId) {
+        return accountStripeRepository.sumBalanceByAccountId(accountId);
+    }
+
+    /**
+     * Optionally drains one account and credits stripes of others, visiting the accounts in id order.
+     *
+     * @return the amount drained from {@code drainAccountId}'s stripes
+     */
+    public BigDecimal applyInOrder(Long drainAccountId, Map<Long, BigDecimal> stripeCredits) {
+        TreeSet<Long> accountIds = new TreeSet<>(stripeCredits.keySet());
+        if (drainAccountId != null) {
+            accountIds.add(drainAccountId);
+        }
+        BigDecimal drained = BigDecimal.ZERO;
+        for (Long accountId : accountIds) {
+            if (accountId.equals(drainAccountId)) {
+                drained = drain(accountId);
+            }
+            BigDecimal credit = stripeCredits.get(accountId);
+            if (credit != null) {
+                credit(accountId, credit);
+            }
+        }
+        return drained;
+    }
+
+    public void credit(Long accountId, BigDecimal value) {
+        // Concurrent credits run on different threads, so hashing the thread spreads them over the stripes.
+        int stripeNo = Math.floorMod(Objects.hash(accountId, Thread.currentThread().getId()), stripes);
+        accountStripeRepository.credit(accountId, stripeNo, value);
+    }
+
+    /**
+     * Zeroes all stripes of the account and returns their former sum. The caller must hold the account row lock
+     * and add the result to the account balance in the same transaction.
+     */
+    public BigDecimal drain(Long accountId) {
+        BigDecimal drained = BigDecimal.ZERO;
+        for (AccountStripe stripe : accountStripeRepository.findAllByAccountIdOrderByStripeNo(accountId)) {
+            drained = drained.add(stripe.getBalance());
+            stripe.setBalance(BigDecimal.ZERO);
+        }
+        return drained;
+    }
+
+    @Scheduled(fixedRateString = "${bank.striping.consolidate-interval:10000}")
+    public void consolidate() {
+        for (Long accountId : hotAccounts.values()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> accountRepository.findLockedById(accountId).ifPresent(account -> {
+                    BigDecimal drained = drain(accountId);
+                    if (drained.signum() != 0) {
+                        account.setBalance(account.getBalance().add(drained));
+                        log.debug("Consolidated {} from stripes into hot account {}", drained, accountId);
+                    }
+                }));
+            } catch (Exception e) {
+                log.error("Error consolidating stripes of account {}: {}", accountId, e.getMessage());
+            }
+        }
+    }
+}
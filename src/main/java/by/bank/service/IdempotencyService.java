@@ -0,0 +1,168 @@
+package by.bank.service;
+
+import by.bank.dto.IdempotentResponse;
+import by.bank.entity.IdempotencyRecord;
+import by.bank.exception.IdempotencyConflictException;
+import by.bank.repository.IdempotencyRecordRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Store of request outcomes keyed by the client supplied {@code Idempotency-Key}.
+ * <p>
+ * Postgres is the source of truth: an execution that moves money records its outcome in its own transaction
+ * (see {@link #record}), and the primary key of {@code idempotency_record} lets only one execution per key commit.
+ * Redis is the fast path in front of it: a key is first claimed there with a pending marker and then replaced by
+ * the final outcome, so duplicates are answered from Redis and concurrent duplicates are rejected before they
+ * reach the database. If the marker expires or storing the outcome fails, the next duplicate finds the outcome
+ * in Postgres, or, if the first execution is still running, fails on the primary key instead of executing twice.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IdempotencyService {
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final String PENDING = "PENDING";
+    private static final String DONE = "DONE";
+    /**
+     * Deletes the key only while it still holds the given value, i.e. the caller's own pending marker.
+     */
+    private static final RedisScript<Long> COMPARE_AND_DELETE = RedisScript.of("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    @Value("${bank.idempotency.ttl:24h}")
+    private Duration ttl;
+    @Value("${bank.idempotency.pending-ttl:180s}")
+    private Duration pendingTtl;
+
+    /**
+     * Claims the key for a new execution.
+     *
+     * @return the stored outcome if the key was already completed, or empty if the caller now owns the key
+     */
+    public Optional<IdempotentResponse> begin(String scope, String key, String fingerprint) {
+        String redisKey = redisKey(scope, key);
+        Boolean claimed = redisTemplate.opsForValue().setIfAbsent(redisKey, pending(fingerprint), pendingTtl);
+        if (Boolean.TRUE.equals(claimed)) {
+            Optional<IdempotencyRecord> record = idempotencyRecordRepository.findByScopeAndIdempotencyKey(scope, key);
+            if (record.isEmpty()) {
+                return Optional.empty();
+            }
+            // Redis lost the outcome, e.g. it expired or could not be stored; Postgres still has it
+            cache(redisKey, record.get().getFingerprint(), new IdempotentResponse(record.get().getStatus(), record.get().getBody()));
+            return Optional.of(replay(scope, key, fingerprint, record.get()));
+        }
+        String stored = redisTemplate.opsForValue().get(redisKey);
+        if (stored == null) {
+            // The previous claim expired between the two calls; try once more.
+            return begin(scope, key, fingerprint);
+        }
+        String[] parts = stored.split(":", 4);
+        checkFingerprint(scope, key, fingerprint, parts[1]);
+        if (PENDING.equals(parts[0])) {
+            throw new IdempotencyConflictException("Request with this Idempotency-Key is still being processed");
+        }
+        log.debug("Replaying stored outcome for idempotency key {} of {}", key, scope);
+        return Optional.of(new IdempotentResponse(Integer.parseInt(parts[2]), parts[3]));
+    }
+
+    /**
+     * Records the outcome in the caller's transaction, which must be the one that executes the request.
+     * Fails with a {@link org.springframework.dao.DataIntegrityViolationException} if another execution with
+     * the same key has committed.
+     */
+    public void record(String scope, String key, String fingerprint, IdempotentResponse response) {
+        idempotencyRecordRepository.insert(scope, key, fingerprint, response.getStatus(), response.getBody());
+    }
+
+    /**
+     * Records the outcome of an execution that changed nothing, in a transaction of its own.
+     *
+     * @return the outcome now stored for the key, which is another execution's if that one recorded first
+     */
+    public IdempotentResponse recordIfAbsent(String scope, String key, String fingerprint, IdempotentResponse response) {
+        if (idempotencyRecordRepository.insertIfAbsent(scope, key, fingerprint, response.getStatus(), response.getBody()) == 1) {
+            return response;
+        }
+        return recorded(scope, key, fingerprint).orElse(response);
+    }
+
+    /**
+     * The outcome Postgres holds for the key, after an execution lost the race to record it.
+     */
+    public Optional<IdempotentResponse> recorded(String scope, String key, String fingerprint) {
+        return idempotencyRecordRepository.findByScopeAndIdempotencyKey(scope, key)
+                .map(record -> replay(scope, key, fingerprint, record));
+    }
+
+    /**
+     * Caches the outcome in Redis. If that fails the pending marker is left in place, so duplicates keep
+     * being rejected until it expires and then answered from Postgres.
+     */
+    public IdempotentResponse complete(String scope, String key, String fingerprint, IdempotentResponse response) {
+        try {
+            cache(redisKey(scope, key), fingerprint, response);
+        } catch (RuntimeException e) {
+            log.error("Error storing outcome for idempotency key {} of {}, keeping it pending: {}", key, scope, e.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * Drops the caller's claim after a failure that is worth retrying, so the client can resubmit with the same
+     * key. A claim that has expired and been taken by another request is left alone.
+     */
+    public void release(String scope, String key, String fingerprint) {
+        redisTemplate.execute(COMPARE_AND_DELETE, List.of(redisKey(scope, key)), pending(fingerprint));
+    }
+
+    @Scheduled(fixedRateString = "${bank.idempotency.cleanup-interval:3600000}")
+    public void deleteExpired() {
+        try {
+            int deleted = idempotencyRecordRepository.deleteOlderThan(ttl.toMillis());
+            log.debug("Deleted {} expired idempotency records", deleted);
+        } catch (Exception e) {
+            log.error("Error deleting expired idempotency records: {}", e.getMessage());
+        }
+    }
+
+    private IdempotentResponse replay(String scope, String key, String fingerprint, IdempotencyRecord record) {
+        checkFingerprint(scope, key, fingerprint, record.getFingerprint());
+        log.debug("Replaying recorded outcome for idempotency key {} of {}", key, scope);
+        return new IdempotentResponse(record.getStatus(), record.getBody());
+    }
+
+    private void checkFingerprint(String scope, String key, String fingerprint, String storedFingerprint) {
+        if (!fingerprint.equals(storedFingerprint)) {
+            log.warn("Idempotency key {} reused by {} with a different request", key, scope);
+            throw new IdempotencyConflictException("Idempotency-Key was already used with a different request");
+        }
+    }
+
+    private void cache(String redisKey, String fingerprint, IdempotentResponse response) {
+        redisTemplate.opsForValue().set(redisKey, DONE + ":" + fingerprint + ":" + response.getStatus() + ":" + response.getBody(), ttl);
+    }
+
+    private static String pending(String fingerprint) {
+        return PENDING + ":" + fingerprint;
+    }
+
+    private String redisKey(String scope, String key) {
+        return KEY_PREFIX + scope + ":" + key;
+    }
+}
@@ -0,0 +1,97 @@
+package by.bank.service;
+
+import by.bank.entity.JournalEntry;
+import by.bank.entity.JournalEntryType;
+import by.bank.exception.ResourceNotFoundException;
+import by.bank.repository.AccountRepository;
+import by.bank.repository.BalanceSnapshotRepository;
+import by.bank.repository.JournalEntryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Append-only journal of balance movements. Every change of {@code account.balance} is recorded here in the
+ * same transaction, which makes the stored balance a cache that can be audited and rebuilt from the journal.
+ * <p>
+ * The stored balance stays the write path: a debit has to be checked against the sender's funds under a lock,
+ * and the account row is what every transfer mode locks or conditionally updates. Deriving the balance from
+ * the snapshot and journal instead would add a read of the unfolded entries to every debit without removing
+ * that lock. The journal therefore costs one more insert per moved balance; contention on hot receivers is
+ * relieved by {@link HotAccountService}, not here.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class JournalService {
+    private static final long OPENING_LOCK = "journal-opening".hashCode();
+    private final JournalEntryRepository journalEntryRepository;
+    private final BalanceSnapshotRepository balanceSnapshotRepository;
+    private final AccountRepository accountRepository;
+    private final HotAccountService hotAccountService;
+    /**
+     * Entries younger than this are not folded into snapshots yet, so that transactions which allocated
+     * an earlier timestamp but have not committed (bounded by the 30s transfer timeout) are never skipped.
+     */
+    @Value("${bank.journal.snapshot-lag:5m}")
+    private Duration snapshotLag;
+
+    /**
+     * Once per database, records the balances accounts had before journaling started, so that interest accrued
+     * earlier is not reported as drift. Accounts created afterwards open at their {@code initial_balance}.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void openJournal() {
+        if (!journalEntryRepository.tryLock(OPENING_LOCK) || journalEntryRepository.existsByEntryType(JournalEntryType.OPENING)) {
+            return;
+        }
+        int opened = journalEntryRepository.insertOpeningEntries();
+        log.info("Recorded opening balances of {} accounts in the journal", opened);
+    }
+
+    public void record(List<JournalEntry> entries) {
+        journalEntryRepository.saveAll(entries);
+    }
+
+    public void recordTransfer(Long senderAccountId, Long receiverAccountId, BigDecimal value) {
+        record(List.of(JournalEntry.debit(senderAccountId, receiverAccountId, value),
+                JournalEntry.credit(receiverAccountId, senderAccountId, value)));
+    }
+
+    public void recordTransferBetweenUsers(Long senderUserId, Long receiverUserId, BigDecimal value) {
+        journalEntryRepository.insertTransfer(senderUserId, receiverUserId, value);
+    }
+
+    @Scheduled(fixedRateString = "${bank.journal.snapshot-interval:300000}")
+    @Transactional
+    public void snapshotBalances() {
+        int updated = balanceSnapshotRepository.foldJournal(snapshotLag.toMillis());
+        log.info("Folded journal entries older than {} into {} balance snapshots", snapshotLag, updated);
+    }
+
+    /**
+     * Replaces the stored balance of the account with the one derived from its snapshot and journal.
+     */
+    @Transactional
+    public void rebuildBalance(Long accountId) {
+        accountRepository.findLockedById(accountId).orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+        hotAccountService.drain(accountId);
+        balanceSnapshotRepository.rebuildBalance(accountId);
+        log.info("Rebuilt balance of account {} from the journal", accountId);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Long> findDriftedAccounts() {
+        return balanceSnapshotRepository.findDriftedAccountIds();
+    }
+}
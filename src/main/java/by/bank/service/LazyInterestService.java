@@ -0,0 +1,111 @@
+package by.bank.service;
+
+import by.bank.config.AccrualMode;
+import by.bank.entity.Account;
+import by.bank.entity.JournalEntry;
+import by.bank.repository.AccountRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Closed-form interest accrual for {@link AccrualMode#LAZY}. Instead of rewriting every balance each period,
+ * an account accrues all periods elapsed since {@code lastAccruedAt} at once when a transfer touches it.
+ * Reads compute the same balance without persisting it, so idle accounts are never written.
+ */
+@Service
+@RequiredArgsConstructor
+public class LazyInterestService {
+    /**
+     * Beyond this many periods every positive balance has reached the cap, so the exponent is bounded by it.
+     */
+    private static final int MAX_PERIODS = 1000;
+    private final AccountRepository accountRepository;
+    private final JournalService journalService;
+    @Value("${bank.interest.mode:ENTITY_LOOP}")
+    private AccrualMode accrualMode;
+    @Value("${bank.interest.period:30s}")
+    private Duration period;
+
+    public boolean isEnabled() {
+        return accrualMode == AccrualMode.LAZY;
+    }
+
+    /**
+     * @return the balance including interest accrued up to now but not persisted yet
+     */
+    public BigDecimal effectiveBalance(Account account) {
+        if (!isEnabled()) {
+            return account.getBalance();
+        }
+        return accruedBalance(account, elapsedPeriods(account, Instant.now()));
+    }
+
+    /**
+     * Applies the elapsed periods to loaded accounts and journals the interest. The caller must hold
+     * the row locks or rely on the version check, and the changes are flushed with the transaction.
+     */
+    public void accrue(Collection<Account> accounts) {
+        if (!isEnabled()) {
+            return;
+        }
+        Instant now = Instant.now();
+        List<JournalEntry> entries = new ArrayList<>();
+        for (Account account : accounts) {
+            if (account.getLastAccruedAt() == null) {
+                account.setLastAccruedAt(now);
+                continue;
+            }
+            long periods = elapsedPeriods(account, now);
+            if (periods == 0) {
+                continue;
+            }
+            BigDecimal balance = accruedBalance(account, periods);
+            BigDecimal interest = balance.subtract(account.getBalance());
+            if (interest.signum() != 0) {
+                entries.add(JournalEntry.interest(account.getId(), interest));
+            }
+            account.setBalance(balance);
+            account.setLastAccruedAt(account.getLastAccruedAt().plus(period.multipliedBy(periods)));
+        }
+        if (!entries.isEmpty()) {
+            journalService.record(entries);
+        }
+    }
+
+    /**
+     * Same as {@link #accrue} for callers that do not load the accounts.
+     */
+    public void accrueByUserIds(Collection<Long> userIds) {
+        if (isEnabled()) {
+            accountRepository.accrueLazily(userIds, AccountService.MULTIPLIER, AccountService.MAX_PERCENTAGE,
+                    period.toMillis(), MAX_PERIODS);
+        }
+    }
+
+    private long elapsedPeriods(Account account, Instant now) {
+        if (account.getLastAccruedAt() == null || !now.isAfter(account.getLastAccruedAt())) {
+            return 0;
+        }
+        return Duration.between(account.getLastAccruedAt(), now).toMillis() / period.toMillis();
+    }
+
+    private BigDecimal accruedBalance(Account account, long periods) {
+        BigDecimal balance = account.getBalance();
+        BigDecimal maxBalance = account.getInitialBalance().multiply(AccountService.MAX_PERCENTAGE);
+        if (periods == 0 || balance.compareTo(maxBalance) >= 0) {
+            return balance;
+        }
+        BigDecimal factor = AccountService.MULTIPLIER.pow((int) Math.min(periods, MAX_PERIODS), MathContext.DECIMAL128);
+        return balance.multiply(factor).min(maxBalance).setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,282 @@
+package by.bank.service;
+
+import by.bank.config.TransferMode;
+import by.bank.dto.TransferDto;
+import by.bank.dto.TransferResultDto;
+import by.bank.dto.TransferStatus;
+import by.bank.entity.Account;
+import by.bank.entity.JournalEntry;
+import by.bank.exception.DataPersistingException;
+import by.bank.exception.InsufficientFundsException;
+import by.bank.repository.AccountRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.security.auth.login.AccountNotFoundException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Transactional units of work behind {@link AccountService}'s transfer API, one per {@link by.bank.config.TransferMode}.
+ * Kept in a separate bean so that callers can wrap a whole transaction, e.g. in a retry.
+ * Credits to hot accounts go to their stripes (see {@link HotAccountService}) and never lock the account row.
+ * Debits from hot accounts always take the locked path, the only one that can drain the sender's stripes.
+ * In lazy accrual mode every account row a transfer touches first accrues its pending interest.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TransferProcessor {
+    private final AccountRepository accountRepository;
+    private final JournalService journalService;
+    private final HotAccountService hotAccountService;
+    private final LazyInterestService lazyInterestService;
+
+    /**
+     * Runs the transfer in the given mode followed by {@code inTransaction}, in one transaction, so that whatever
+     * {@code inTransaction} writes commits or rolls back together with the transfer.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED, timeout = 30, rollbackFor = AccountNotFoundException.class)
+    public void transfer(TransferMode mode, Long userId, TransferDto transferDto, Runnable inTransaction) throws AccountNotFoundException {
+        switch (mode) {
+            case CONDITIONAL_UPDATE -> transferConditionally(userId, transferDto);
+            case OPTIMISTIC -> transferOptimistic(userId, transferDto);
+            default -> transferLocked(userId, transferDto);
+        }
+        inTransaction.run();
+    }
+
+    @Transactional(isolation = Isolation.READ_COMMITTED, timeout = 30)
+    public void transferLocked(Long userId, TransferDto transferDto) throws AccountNotFoundException {
+        Long stripedAccountId = stripedReceiver(userId, transferDto.getTransferTo());
+        Map<Long, Account> accounts = lockAccounts(stripedAccountId == null ? List.of(userId, transferDto.getTransferTo()) : List.of(userId));
+        lazyInterestService.accrue(accounts.values());
+        move(userId, transferDto, accounts, stripedAccountId, true);
+    }
+
+    /**
+     * Reads both accounts without row locks. A concurrent change of either account is detected by the
+     * version check at commit and surfaces as an {@link org.springframework.dao.OptimisticLockingFailureException}.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED, timeout = 30)
+    public void transferOptimistic(Long userId, TransferDto transferDto) throws AccountNotFoundException {
+        if (hotAccountService.hotAccountId(userId) != null) {
+            transferLocked(userId, transferDto);
+            return;
+        }
+        Long stripedAccountId = stripedReceiver(userId, transferDto.getTransferTo());
+        Set<Long> userIds = new HashSet<>(List.of(userId, transferDto.getTransferTo()));
+        if (stripedAccountId != null) {
+            userIds.remove(transferDto.getTransferTo());
+        }
+        Map<Long, Account> accounts = accountRepository.findAllByUserIdIn(userIds).stream()
+                .collect(Collectors.toMap(account -> account.getUser().getId(), Function.identity()));
+        lazyInterestService.accrue(accounts.values());
+        move(userId, transferDto, accounts, stripedAccountId, false);
+    }
+
+    /**
+     * Moves money with two single-row UPDATE statements and no entity hydration. Both rows are locked up front
+     * in account id order, the order every other transfer path locks in, so transfers in opposite directions
+     * cannot deadlock whichever mode they run in. A debit that matches no row rolls the whole transfer back.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED, timeout = 30, rollbackFor = AccountNotFoundException.class)
+    public void transferConditionally(Long userId, TransferDto transferDto) throws AccountNotFoundException {
+        if (hotAccountService.hotAccountId(userId) != null) {
+            transferLocked(userId, transferDto);
+            return;
+        }
+        Long receiverId = transferDto.getTransferTo();
+        BigDecimal value = transferDto.getValue();
+        Long stripedAccountId = stripedReceiver(userId, receiverId);
+        lazyInterestService.accrueByUserIds(stripedAccountId == null ? List.of(userId, receiverId) : List.of(userId));
+        if (stripedAccountId != null) {
+            debit(userId, value);
+            hotAccountService.credit(stripedAccountId, value);
+        } else {
+            accountRepository.lockIdsByUserIdIn(new HashSet<>(List.of(userId, receiverId)));
+            debit(userId, value);
+            credit(receiverId, value);
+        }
+        journalService.recordTransferBetweenUsers(userId, receiverId, value);
+        log.info("Transfer successful. User {} sent {} to user {}", userId, value, receiverId);
+    }
+
+    /**
+     * Executes all transfers of the caller in one transaction. Every touched account is locked once,
+     * items are applied in request order against the sender's running balance, and the netted
+     * deltas are written with a single flush. Items that cannot be applied are reported, not thrown.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED, timeout = 30)
+    public List<TransferResultDto> transferBatch(Long userId, List<TransferDto> transfers) throws AccountNotFoundException {
+        Set<Long> userIds = new HashSet<>();
+        Map<Long, Long> stripedAccountIds = new HashMap<>();
+        userIds.add(userId);
+        for (TransferDto transfer : transfers) {
+            Long stripedAccountId = stripedReceiver(userId, transfer.getTransferTo());
+            if (stripedAccountId != null) {
+                stripedAccountIds.put(transfer.getTransferTo(), stripedAccountId);
+            } else {
+                userIds.add(transfer.getTransferTo());
+            }
+        }
+
+        Map<Long, Account> accounts = lockAccounts(userIds);
+        lazyInterestService.accrue(accounts.values());
+        Account accountFrom = accounts.get(userId);
+        if (accountFrom == null) {
+            log.error("Sender account not found for user ID: {}", userId);
+            throw new AccountNotFoundException("Sender account not found");
+        }
+
+        BigDecimal available = accountFrom.getBalance();
+        boolean hotSender = hotAccountService.isStriped(accountFrom.getId());
+        if (hotSender) {
+            available = available.add(hotAccountService.stripedBalance(accountFrom.getId()));
+        }
+        BigDecimal debited = BigDecimal.ZERO;
+        Map<Account, BigDecimal> credits = new LinkedHashMap<>();
+        Map<Long, BigDecimal> stripeCredits = new HashMap<>();
+        List<TransferResultDto> results = new ArrayList<>(transfers.size());
+        List<JournalEntry> entries = new ArrayList<>();
+        for (TransferDto transfer : transfers) {
+            Account accountTo = accounts.get(transfer.getTransferTo());
+            Long stripedAccountId = stripedAccountIds.get(transfer.getTransferTo());
+            TransferStatus status;
+            if (accountTo == null && stripedAccountId == null) {
+                status = TransferStatus.ACCOUNT_NOT_FOUND;
+            } else if (available.compareTo(transfer.getValue()) < 0) {
+                status = TransferStatus.INSUFFICIENT_FUNDS;
+            } else {
+                available = available.subtract(transfer.getValue());
+                debited = debited.add(transfer.getValue());
+                Long receiverAccountId;
+                if (accountTo != null) {
+                    credits.merge(accountTo, transfer.getValue(), BigDecimal::add);
+                    receiverAccountId = accountTo.getId();
+                } else {
+                    stripeCredits.merge(stripedAccountId, transfer.getValue(), BigDecimal::add);
+                    receiverAccountId = stripedAccountId;
+                }
+                entries.add(JournalEntry.debit(accountFrom.getId(), receiverAccountId, transfer.getValue()));
+                entries.add(JournalEntry.credit(receiverAccountId, accountFrom.getId(), transfer.getValue()));
+                status = TransferStatus.COMPLETED;
+            }
+            results.add(new TransferResultDto(transfer.getTransferTo(), transfer.getValue(), status));
+        }
+
+        try {
+            boolean drainSender = hotSender && debited.compareTo(accountFrom.getBalance()) > 0;
+            BigDecimal drained = hotAccountService.applyInOrder(drainSender ? accountFrom.getId() : null, stripeCredits);
+            accountFrom.setBalance(accountFrom.getBalance().add(drained).subtract(debited));
+            if (debited.signum() > 0) {
+                accountFrom.setSaturated(false);
+            }
+            credits.forEach((account, amount) -> account.setBalance(account.getBalance().add(amount)));
+            accountRepository.saveAll(accounts.values());
+            journalService.record(entries);
+            log.info("Batch transfer from user {} processed: {} of {} items completed", userId,
+                    results.stream().filter(result -> result.getStatus() == TransferStatus.COMPLETED).count(), results.size());
+        } catch (ConcurrencyFailureException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error processing batch transfer from {}: {}", userId, e.getMessage());
+            throw new DataPersistingException("Error processing batch transfer", e);
+        }
+        return results;
+    }
+
+    /**
+     * @param stripedAccountId account id of a hot receiver credited through its stripes, or {@code null}
+     * @param senderLocked     whether the sender row is locked, which allows draining the sender's own stripes
+     */
+    private void move(Long userId, TransferDto transferDto, Map<Long, Account> accounts, Long stripedAccountId, boolean senderLocked) throws AccountNotFoundException {
+        Account accountFrom = accounts.get(userId);
+        if (accountFrom == null) {
+            log.error("Sender account not found for user ID: {}", userId);
+            throw new AccountNotFoundException("Sender account not found");
+        }
+        Account accountTo = accounts.get(transferDto.getTransferTo());
+        if (accountTo == null && stripedAccountId == null) {
+            log.error("Receiver account not found for user ID: {}", transferDto.getTransferTo());
+            throw new AccountNotFoundException("Receiver account not found");
+        }
+        BigDecimal value = transferDto.getValue();
+        boolean drainSender = senderLocked && accountFrom.getBalance().compareTo(value) < 0 && hotAccountService.isStriped(accountFrom.getId());
+        BigDecimal available = drainSender ? accountFrom.getBalance().add(hotAccountService.stripedBalance(accountFrom.getId())) : accountFrom.getBalance();
+        if (available.compareTo(value) < 0) {
+            log.warn("Insufficient funds for transfer: User {} balance {} < transfer amount {}", userId, available, value);
+            throw new InsufficientFundsException("Insufficient funds");
+        }
+        try {
+            Map<Long, BigDecimal> stripeCredits = stripedAccountId == null ? Map.of() : Map.of(stripedAccountId, value);
+            if (drainSender) {
+                accountFrom.setBalance(accountFrom.getBalance().add(hotAccountService.applyInOrder(accountFrom.getId(), stripeCredits)));
+            }
+            accountFrom.setBalance(accountFrom.getBalance().subtract(value));
+            accountFrom.setSaturated(false);
+            if (accountTo != null) {
+                accountTo.setBalance(accountTo.getBalance().add(value));
+                accountRepository.saveAll(List.of(accountFrom, accountTo));
+            } else {
+                accountRepository.save(accountFrom);
+            }
+            if (!drainSender) {
+                // Applied after the account rows have been updated, keeping stripes last in the lock order.
+                hotAccountService.applyInOrder(null, stripeCredits);
+            }
+            Long receiverAccountId = accountTo != null ? accountTo.getId() : stripedAccountId;
+            journalService.recordTransfer(accountFrom.getId(), receiverAccountId, value);
+
+            log.info("Transfer successful. User {} sent {} to account {}, new sender balance {}", userId, value, receiverAccountId, accountFrom.getBalance());
+        } catch (ConcurrencyFailureException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error processing transfer from {} to {}: {}", userId, transferDto.getTransferTo(), e.getMessage());
+            throw new DataPersistingException("Error processing transfer", e);
+        }
+    }
+
+    private void debit(Long userId, BigDecimal value) throws AccountNotFoundException {
+        if (accountRepository.debitIfSufficient(userId, value) == 0) {
+            if (!accountRepository.existsByUserId(userId)) {
+                log.error("Sender account not found for user ID: {}", userId);
+                throw new AccountNotFoundException("Sender account not found");
+            }
+            log.warn("Insufficient funds for transfer: User {} balance < transfer amount {}", userId, value);
+            throw new InsufficientFundsException("Insufficient funds");
+        }
+    }
+
+    private void credit(Long userId, BigDecimal value) throws AccountNotFoundException {
+        if (accountRepository.credit(userId, value) == 0) {
+            log.error("Receiver account not found for user ID: {}", userId);
+            throw new AccountNotFoundException("Receiver account not found");
+        }
+    }
+
+    /**
+     * @return the account id of the receiver if its credits go to stripes; self-transfers are never striped
+     */
+    private Long stripedReceiver(Long userId, Long receiverId) {
+        return userId.equals(receiverId) ? null : hotAccountService.hotAccountId(receiverId);
+    }
+
+    private Map<Long, Account> lockAccounts(Collection<Long> userIds) {
+        return accountRepository.findAllByUserIdInOrderById(new HashSet<>(userIds)).stream()
+                .collect(Collectors.toMap(account -> account.getUser().getId(), Function.identity()));
+    }
+}
@@ -0,0 +1,170 @@
+package by.bank.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Tags cached user searches so that a contact change evicts only the searches it can affect.
+ * <p>
+ * Each cached search is recorded in a Redis set per user it returned, and per phone and email it filtered on.
+ * Contact changes never alter names or dates of birth, so a search is affected only if it returned the user
+ * or filtered on one of the changed contacts. Tags are shared by all nodes through Redis.
+ * <p>
+ * Every invalidation also bumps a generation counter. A search that saw the counter change while it ran may
+ * have read the old contacts after the invalidation had already collected the tags, so it evicts its own entry
+ * right after caching it.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserCacheTags {
+    public static final String SEARCH_CACHE = "users";
+    private static final String TAG_PREFIX = SEARCH_CACHE + ":tag:";
+    private static final String GENERATION = TAG_PREFIX + "generation";
+    /**
+     * Collects the keys tagged with any of the tags and drops the tags in one step, so a key tagged concurrently
+     * is either returned or left for the next invalidation. The first key is the generation counter.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> POP_TAGS = RedisScript.of("""
+            local tags = {unpack(KEYS, 2)}
+            local keys = redis.call('SUNION', unpack(tags))
+            redis.call('DEL', unpack(tags))
+            redis.call('INCR', KEYS[1])
+            return keys
+            """, List.class);
+    private final StringRedisTemplate redisTemplate;
+    private final CacheManager cacheManager;
+    @Value("${bank.cache.time-to-live:10m}")
+    private Duration timeToLive;
+
+    /**
+     * Cache key of a search. Every part is prefixed with its length, so values containing the separator cannot
+     * make two different searches share a key; {@code null} is written as {@code -}.
+     */
+    public static String searchKey(Object... parts) {
+        StringBuilder key = new StringBuilder();
+        for (Object part : parts) {
+            if (part == null) {
+                key.append('-');
+            } else {
+                String value = part.toString();
+                key.append(value.length()).append(':').append(value);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the cached search or runs it, then caches and tags the result.
+     *
+     * @param userIds the users the result contains
+     */
+    public <T> T cached(String key, Supplier<T> search, Function<T, Collection<Long>> userIds, String phone, String email) {
+        return cached(key, search, Function.identity(), userIds, phone, email);
+    }
+
+    /**
+     * Like {@link #cached(String, Supplier, Function, String, String)}, but caches {@code value} of the search
+     * result, for results whose cached form no longer tells which users they contain.
+     */
+    @SuppressWarnings("unchecked")
+    public <R, T> T cached(String key, Supplier<R> search, Function<R, T> value, Function<R, Collection<Long>> userIds,
+                           String phone, String email) {
+        Cache cache = searchCache();
+        Cache.ValueWrapper hit = cache.get(key);
+        if (hit != null) {
+            return (T) hit.get();
+        }
+        String generation = redisTemplate.opsForValue().get(GENERATION);
+        R found = search.get();
+        T result = value.apply(found);
+        // Tags go first: if Redis rejects them, the search fails rather than caching an entry no change can evict
+        tag(key, userIds.apply(found), phone, email);
+        cache.put(key, result);
+        if (!Objects.equals(generation, redisTemplate.opsForValue().get(GENERATION))) {
+            log.debug("Contacts changed while searching, not keeping cached search {}", key);
+            cache.evict(key);
+        }
+        return result;
+    }
+
+    /**
+     * Tag sets expire with the entries: every tagging extends the set to the cache time to live.
+     */
+    private void tag(String key, Collection<Long> userIds, String phone, String email) {
+        List<String> tags = new ArrayList<>();
+        userIds.forEach(userId -> tags.add(userTag(userId)));
+        if (phone != null) {
+            tags.add(phoneTag(phone));
+        }
+        if (email != null) {
+            tags.add(emailTag(email));
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            tags.forEach(tag -> {
+                stringConnection.sAdd(tag, key);
+                stringConnection.pExpire(tag, timeToLive.toMillis());
+            });
+            return null;
+        });
+    }
+
+    /**
+     * Evicts the searches that returned the user or filtered on one of the user's old or new phones.
+     */
+    public void invalidatePhone(Long userId, String... phones) {
+        invalidate(userId, Arrays.stream(phones).filter(Objects::nonNull).map(UserCacheTags::phoneTag).toList());
+    }
+
+    public void invalidateEmail(Long userId, String... emails) {
+        invalidate(userId, Arrays.stream(emails).filter(Objects::nonNull).map(UserCacheTags::emailTag).toList());
+    }
+
+    private void invalidate(Long userId, List<String> contactTags) {
+        List<String> keys = new ArrayList<>();
+        keys.add(GENERATION);
+        keys.addAll(contactTags);
+        keys.add(userTag(userId));
+        List<?> searches = redisTemplate.execute(POP_TAGS, keys);
+        Cache cache = searchCache();
+        if (searches != null) {
+            searches.forEach(cache::evict);
+        }
+        log.debug("Evicted {} cached searches affected by user {}", searches == null ? 0 : searches.size(), userId);
+    }
+
+    private Cache searchCache() {
+        return Objects.requireNonNull(cacheManager.getCache(SEARCH_CACHE));
+    }
+
+    private static String userTag(Long userId) {
+        return TAG_PREFIX + "user:" + userId;
+    }
+
+    private static String phoneTag(String phone) {
+        return TAG_PREFIX + "phone:" + phone;
+    }
+
+    private static String emailTag(String email) {
+        return TAG_PREFIX + "email:" + email;
+    }
+}
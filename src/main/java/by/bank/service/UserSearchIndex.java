@@ -0,0 +1,359 @@
+package by.bank.service;
+
+import by.bank.dto.UserSortOrder;
+import by.bank.repository.specification.UserKeyset;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Optional in-process index answering the filter part of the user search: sorted sets by name and by date of
+ * birth, and hash maps for the unique phones and emails. It resolves the ids of a page without running the
+ * search query; the page itself is still read from Postgres by primary key, because balances change too often
+ * to be served from memory.
+ * <p>
+ * The index is warmed at startup and picks up new users every few seconds. Contact changes and users the
+ * database no longer returns are published on {@link #CHANNEL} and applied by every node, including the
+ * publisher, the way {@link by.bank.cache.TwoLevelCacheManager} broadcasts evictions. What the index can still
+ * miss is only picked up by the periodic rebuild, so searches may lag by up to {@code bank.search.index.refresh-interval}
+ * for changes made outside {@link UserService}, e.g. names or dates of birth edited in the database, and for
+ * updates published while a node was not subscribed, after which the node rebuilds. Until the index is ready,
+ * callers use the database.
+ * <p>
+ * Names are ordered by code point, like the {@link UserKeyset#NAME_COLLATION} collation of the database path.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserSearchIndex implements MessageListener, SubscriptionListener {
+    public static final String CHANNEL = "bank:search-index:updates";
+    private static final String SEPARATOR = "\n";
+    private static final String PHONE = "phone";
+    private static final String EMAIL = "email";
+    private static final String REMOVE = "remove";
+    private static final Comparator<IndexedUser> BY_NAME = Comparator.comparing(IndexedUser::name, Comparator.nullsLast(UserSearchIndex::compareCodePoints))
+            .thenComparing(IndexedUser::id);
+    /**
+     * Every name with a given prefix sorts before the prefix followed by this.
+     */
+    private static final String AFTER_PREFIX = new String(Character.toChars(Character.MAX_CODE_POINT));
+    private static final Comparator<IndexedUser> BY_DATE_OF_BIRTH = Comparator.comparing(IndexedUser::dateOfBirth, Comparator.nullsLast(Comparator.<LocalDate>naturalOrder()))
+            .thenComparing(IndexedUser::id);
+    private final JdbcTemplate jdbcTemplate;
+    private final StringRedisTemplate redisTemplate;
+    @Value("${bank.search.index.enabled:false}")
+    private boolean enabled;
+
+    private volatile Index current;
+    /**
+     * Index being rebuilt; published updates are applied to it as well so that they survive the swap.
+     */
+    private volatile Index building;
+
+    private record IndexedUser(Long id, String name, LocalDate dateOfBirth) {
+    }
+
+    private static class Index {
+        final ConcurrentSkipListMap<Long, IndexedUser> byId = new ConcurrentSkipListMap<>();
+        final NavigableSet<IndexedUser> byName = new ConcurrentSkipListSet<>(BY_NAME);
+        final NavigableSet<IndexedUser> byDateOfBirth = new ConcurrentSkipListSet<>(BY_DATE_OF_BIRTH);
+        final Map<String, Long> phones = new ConcurrentHashMap<>();
+        final Map<String, Long> emails = new ConcurrentHashMap<>();
+
+        void add(IndexedUser user) {
+            byId.put(user.id(), user);
+            byName.add(user);
+            byDateOfBirth.add(user);
+        }
+
+        void remove(Long userId) {
+            IndexedUser user = byId.remove(userId);
+            if (user != null) {
+                byName.remove(user);
+                byDateOfBirth.remove(user);
+            }
+        }
+    }
+
+    public boolean isReady() {
+        return enabled && current != null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedRateString = "${bank.search.index.refresh-interval:300000}", initialDelayString = "${bank.search.index.refresh-interval:300000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        Index index = new Index();
+        building = index;
+        try {
+            load(List.of(index), 0L);
+            current = index;
+            log.info("User search index built with {} users", index.byId.size());
+        } catch (Exception e) {
+            log.error("Error building user search index: {}", e.getMessage());
+        } finally {
+            building = null;
+        }
+    }
+
+    /**
+     * Adds the users created since the index was built, which are the ones with higher ids.
+     */
+    @Scheduled(fixedRateString = "${bank.search.index.new-users-interval:5000}", initialDelayString = "${bank.search.index.new-users-interval:5000}")
+    public void addNewUsers() {
+        Index index = current;
+        if (!enabled || index == null) {
+            return;
+        }
+        try {
+            Long lastId = index.byId.isEmpty() ? 0L : index.byId.lastKey();
+            Index rebuilding = building;
+            load(rebuilding == null ? List.of(index) : List.of(index, rebuilding), lastId);
+        } catch (Exception e) {
+            log.error("Error adding new users to user search index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Drops users that the database no longer has, e.g. when reading the ids returned by the index found fewer users.
+     */
+    public void removeUsers(Collection<Long> userIds) {
+        if (!userIds.isEmpty()) {
+            publish(REMOVE, userIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+        }
+    }
+
+    /**
+     * Ids of the matching users ordered by id, for offset pagination. A name prefix narrows the scan to the
+     * users with that prefix, which are then ordered by id; otherwise the users are scanned in id order.
+     */
+    public List<Long> findIds(LocalDate dateOfBirth, String phone, String name, String email, long offset, int limit) {
+        Index index = current;
+        Stream<IndexedUser> candidates = byContact(index, phone, email);
+        if (candidates == null && name != null) {
+            candidates = nameRange(index, name, null).stream()
+                    .sorted(Comparator.comparing(IndexedUser::id));
+        } else if (candidates == null) {
+            candidates = index.byId.values().stream();
+        }
+        return candidates.filter(user -> matches(index, user, dateOfBirth, phone, name, email))
+                .skip(offset)
+                .limit(limit)
+                .map(IndexedUser::id)
+                .toList();
+    }
+
+    /**
+     * Ids of the matching users after the keyset position, in the order of {@link UserKeyset#orders}.
+     */
+    public List<Long> findIdsAfter(LocalDate dateOfBirth, String phone, String name, String email, UserSortOrder order, UserKeyset after, int limit) {
+        Index index = current;
+        Stream<IndexedUser> candidates = byContact(index, phone, email);
+        if (candidates != null) {
+            Comparator<IndexedUser> comparator = order == UserSortOrder.NAME ? BY_NAME : BY_DATE_OF_BIRTH;
+            IndexedUser position = after == null ? null : position(after);
+            candidates = candidates.filter(user -> position == null || comparator.compare(user, position) > 0);
+        } else if (order == UserSortOrder.NAME) {
+            candidates = nameRange(index, name, after == null ? null : position(after)).stream();
+        } else {
+            IndexedUser lower = after == null ? null : position(after);
+            if (dateOfBirth != null) {
+                IndexedUser lastExcluded = new IndexedUser(Long.MAX_VALUE, null, dateOfBirth);
+                if (lower == null || BY_DATE_OF_BIRTH.compare(lastExcluded, lower) > 0) {
+                    lower = lastExcluded;
+                }
+            }
+            candidates = range(index.byDateOfBirth, BY_DATE_OF_BIRTH, lower, false, null).stream();
+        }
+        return candidates.filter(user -> matches(index, user, dateOfBirth, phone, name, email))
+                .limit(limit)
+                .map(IndexedUser::id)
+                .toList();
+    }
+
+    public void updatePhone(Long userId, String oldPhone, String newPhone) {
+        publish(PHONE, String.valueOf(userId), Objects.toString(oldPhone, ""), Objects.toString(newPhone, ""));
+    }
+
+    public void updateEmail(Long userId, String oldEmail, String newEmail) {
+        publish(EMAIL, String.valueOf(userId), Objects.toString(oldEmail, ""), Objects.toString(newEmail, ""));
+    }
+
+    /**
+     * Sends an update to every node. If Redis cannot take it, it is applied here only and other nodes catch up
+     * on their next rebuild.
+     */
+    private void publish(String... fields) {
+        if (!enabled) {
+            return;
+        }
+        String message = String.join(SEPARATOR, fields);
+        try {
+            redisTemplate.convertAndSend(CHANNEL, message);
+        } catch (Exception e) {
+            log.error("Error publishing user search index update {}: {}", fields[0], e.getMessage());
+            apply(message);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        apply(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        if (current != null) {
+            log.info("Resubscribed to user search index updates, rebuilding to pick up the ones missed");
+            rebuild();
+        }
+    }
+
+    private void apply(String message) {
+        String[] fields = message.split(SEPARATOR, -1);
+        if (fields[0].equals(REMOVE)) {
+            List<Long> userIds = Arrays.stream(fields[1].split(",")).map(Long::valueOf).toList();
+            for (Index index : new Index[]{current, building}) {
+                if (index != null) {
+                    userIds.forEach(index::remove);
+                }
+            }
+            return;
+        }
+        Long userId = Long.valueOf(fields[1]);
+        for (Index index : new Index[]{current, building}) {
+            if (index == null) {
+                continue;
+            }
+            Map<String, Long> contacts = fields[0].equals(PHONE) ? index.phones : index.emails;
+            if (!fields[2].isEmpty()) {
+                contacts.remove(fields[2], userId);
+            }
+            if (!fields[3].isEmpty()) {
+                contacts.put(fields[3], userId);
+            }
+        }
+    }
+
+    /**
+     * Loads the users with ids above {@code afterId}, and their contacts, into every given index.
+     */
+    private void load(List<Index> indexes, Long afterId) {
+        jdbcTemplate.query("SELECT id, name, date_of_birth FROM users WHERE id > ?", rs -> {
+            Date dateOfBirth = rs.getDate("date_of_birth");
+            IndexedUser user = new IndexedUser(rs.getLong("id"), rs.getString("name"), dateOfBirth == null ? null : dateOfBirth.toLocalDate());
+            indexes.forEach(index -> index.add(user));
+        }, afterId);
+        jdbcTemplate.query("SELECT phone, user_id FROM phone_data WHERE user_id > ?", rs -> {
+            String phone = rs.getString("phone");
+            long userId = rs.getLong("user_id");
+            indexes.forEach(index -> index.phones.putIfAbsent(phone, userId));
+        }, afterId);
+        jdbcTemplate.query("SELECT email, user_id FROM email_data WHERE user_id > ?", rs -> {
+            String email = rs.getString("email");
+            long userId = rs.getLong("user_id");
+            indexes.forEach(index -> index.emails.putIfAbsent(email, userId));
+        }, afterId);
+    }
+
+    /**
+     * Users after {@code lower} in name order, restricted to the names starting with {@code prefix} if it is set.
+     */
+    private static NavigableSet<IndexedUser> nameRange(Index index, String prefix, IndexedUser lower) {
+        IndexedUser upper = null;
+        boolean lowerInclusive = false;
+        if (prefix != null) {
+            IndexedUser prefixStart = new IndexedUser(Long.MIN_VALUE, prefix, null);
+            if (lower == null || BY_NAME.compare(prefixStart, lower) > 0) {
+                lower = prefixStart;
+                lowerInclusive = true;
+            }
+            upper = new IndexedUser(Long.MIN_VALUE, prefix + AFTER_PREFIX, null);
+        }
+        return range(index.byName, BY_NAME, lower, lowerInclusive, upper);
+    }
+
+    /**
+     * @return the at most one user owning the phone or email, or {@code null} if neither is searched for
+     */
+    private Stream<IndexedUser> byContact(Index index, String phone, String email) {
+        if (phone == null && email == null) {
+            return null;
+        }
+        Long userId = phone != null ? index.phones.get(phone) : index.emails.get(email);
+        return Stream.ofNullable(userId == null ? null : index.byId.get(userId));
+    }
+
+    /**
+     * Same predicates as {@link by.bank.repository.specification.UserSpecifications}.
+     */
+    private boolean matches(Index index, IndexedUser user, LocalDate dateOfBirth, String phone, String name, String email) {
+        return (dateOfBirth == null || user.dateOfBirth() != null && user.dateOfBirth().isAfter(dateOfBirth))
+                && (name == null || user.name() != null && user.name().startsWith(name))
+                && (phone == null || Objects.equals(index.phones.get(phone), user.id()))
+                && (email == null || Objects.equals(index.emails.get(email), user.id()));
+    }
+
+    private static NavigableSet<IndexedUser> range(NavigableSet<IndexedUser> set, Comparator<IndexedUser> comparator,
+                                                   IndexedUser lower, boolean lowerInclusive, IndexedUser upper) {
+        if (lower != null && upper != null) {
+            return comparator.compare(lower, upper) < 0 ? set.subSet(lower, lowerInclusive, upper, false) : Collections.emptyNavigableSet();
+        }
+        if (lower != null) {
+            return set.tailSet(lower, lowerInclusive);
+        }
+        return upper != null ? set.headSet(upper, false) : set;
+    }
+
+    /**
+     * Compares by Unicode code point, which differs from {@link String#compareTo} for characters outside the BMP.
+     */
+    static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int codePointA = a.codePointAt(i);
+            int codePointB = b.codePointAt(j);
+            if (codePointA != codePointB) {
+                return Integer.compare(codePointA, codePointB);
+            }
+            i += Character.charCount(codePointA);
+            j += Character.charCount(codePointB);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    private static IndexedUser position(UserKeyset keyset) {
+        LocalDate dateOfBirth = keyset.getOrder() == UserSortOrder.DATE_OF_BIRTH && keyset.getValue() != null ? LocalDate.parse(keyset.getValue()) : null;
+        String name = keyset.getOrder() == UserSortOrder.NAME ? keyset.getValue() : null;
+        return new IndexedUser(keyset.getId(), name, dateOfBirth);
+    }
+}
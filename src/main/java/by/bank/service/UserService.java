@@ -1,33 +1,55 @@
 package by.bank.service;
 
 import by.bank.config.JwtUtil;
+import by.bank.dto.CachedUserPage;
+import by.bank.dto.UserSearchQuery;
+import by.bank.dto.UserSearchResultDto;
+import by.bank.dto.UserSortOrder;
+import by.bank.dto.entityDto.AccountDto;
 import by.bank.dto.entityDto.EmailDataDto;
 import by.bank.dto.entityDto.PhoneDataDto;
 import by.bank.dto.entityDto.UserDto;
+import by.bank.entity.Account;
 import by.bank.entity.EmailData;
 import by.bank.entity.PhoneData;
 import by.bank.entity.User;
 import by.bank.exception.AccessDeniedException;
 import by.bank.exception.DataPersistingException;
 import by.bank.exception.ResourceNotFoundException;
+import by.bank.mapper.AccountBalanceResolver;
 import by.bank.mapper.UserMapper;
 import by.bank.repository.EmailDataRepository;
 import by.bank.repository.PhoneDataRepository;
+import by.bank.repository.UserReadRepository;
 import by.bank.repository.UserRepository;
+import by.bank.repository.specification.UserKeyset;
 import by.bank.repository.specification.UserSpecifications;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.DigestUtils;
 import org.springframework.util.StringUtils;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -36,23 +58,174 @@ import java.util.Optional;
 
 public class UserService {
     private final UserRepository userRepository;
+    private final UserReadRepository userReadRepository;
+    private final AccountBalanceResolver accountBalanceResolver;
+    private final UserSearchIndex userSearchIndex;
+    private final UserCacheTags userCacheTags;
     private final UserMapper userMapper;
     private final JwtUtil jwtUtil;
     private final PhoneDataRepository phoneDataRepository;
     private final EmailDataRepository emailDataRepository;
+    private final ObjectMapper objectMapper;
+    @Value("${bank.export.fetch-size:1000}")
+    private int exportFetchSize;
 
 
-    @Cacheable(key = "{#dateOfBirth, #phone, #name, #email, #pageable.pageNumber, #pageable.pageSize}",condition = "#pageable.pageSize > 10")
-    public List<UserDto> searchUsers(LocalDate dateOfBirth, String phone, String name, String email, Pageable pageable) {
-        List<User> users = userRepository.findAll(UserSpecifications.buildUserSpecification(dateOfBirth, phone, name, email), pageable).toList();
-        return userMapper.toDto(users);
+    /**
+     * Offset-paginated search. Fetches one extra id to tell whether a next page exists instead of counting
+     * all matches.
+     */
+    @Transactional(readOnly = true)
+    public Slice<UserDto> searchUsers(LocalDate dateOfBirth, String phone, String name, String email, Pageable pageable) {
+        if (pageable.getPageSize() <= 10) {
+            return findPage(dateOfBirth, phone, name, email, pageable);
+        }
+        return userCacheTags.cached(UserCacheTags.searchKey("page", dateOfBirth, phone, name, email, pageable.getPageNumber(), pageable.getPageSize()),
+                () -> findPage(dateOfBirth, phone, name, email, pageable),
+                users -> users.getContent().stream().map(UserDto::getId).toList(), phone, email);
+    }
+
+    /**
+     * Keyset-paginated search: continues after {@code after}, or starts from the beginning when it is empty.
+     * Fetches one extra row to detect the last page instead of counting, so every page costs the same.
+     */
+    @Transactional(readOnly = true)
+    public UserSearchResultDto searchUsersAfter(LocalDate dateOfBirth, String phone, String name, String email, UserSortOrder order,
+                                                String after, int size) {
+        if (size <= 10) {
+            return findAfter(dateOfBirth, phone, name, email, order, after, size);
+        }
+        return userCacheTags.cached(UserCacheTags.searchKey("after", dateOfBirth, phone, name, email, order, after, size),
+                () -> findAfter(dateOfBirth, phone, name, email, order, after, size),
+                result -> result.getUsers().stream().map(UserDto::getId).toList(), phone, email);
+    }
+
+    /**
+     * Either search, cached as the final JSON response so that a hit is written to the client as is,
+     * without deserializing and re-serializing the users.
+     */
+    @Transactional(readOnly = true)
+    public CachedUserPage searchUsersJson(UserSearchQuery query) {
+        if (query.getSize() <= 10) {
+            return findJson(query).page();
+        }
+        String key = UserCacheTags.searchKey("json", query.getDateOfBirth(), query.getPhone(), query.getName(), query.getEmail(),
+                query.getOrder(), query.getAfter(), query.getPage(), query.getSize());
+        return userCacheTags.cached(key, () -> findJson(query), SearchedPage::page, SearchedPage::userIds,
+                query.getPhone(), query.getEmail());
+    }
+
+    /**
+     * A rendered page together with the ids it contains, which the cache needs for tagging.
+     */
+    private record SearchedPage(CachedUserPage page, List<Long> userIds) {
+    }
+
+    private SearchedPage findJson(UserSearchQuery query) {
+        List<UserDto> users;
+        boolean hasNext;
+        String nextCursor = null;
+        if (query.isKeyset()) {
+            UserSearchResultDto result = findAfter(query.getDateOfBirth(), query.getPhone(), query.getName(), query.getEmail(),
+                    query.getOrder(), query.getAfter(), query.getSize());
+            users = result.getUsers();
+            nextCursor = result.getNextCursor();
+            hasNext = nextCursor != null;
+        } else {
+            Slice<UserDto> slice = findPage(query.getDateOfBirth(), query.getPhone(), query.getName(), query.getEmail(),
+                    PageRequest.of(query.getPage(), query.getSize()));
+            users = slice.getContent();
+            hasNext = slice.hasNext();
+        }
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(users);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new SearchedPage(new CachedUserPage(body, "\"0" + DigestUtils.md5DigestAsHex(body) + "\"", hasNext, nextCursor),
+                users.stream().map(UserDto::getId).toList());
+    }
+
+    private Slice<UserDto> findPage(LocalDate dateOfBirth, String phone, String name, String email, Pageable pageable) {
+        List<Long> ids;
+        boolean indexed = userSearchIndex.isReady() && pageable.getSort().isUnsorted();
+        if (indexed) {
+            ids = userSearchIndex.findIds(dateOfBirth, phone, name, email, pageable.getOffset(), pageable.getPageSize() + 1);
+        } else {
+            Sort sort = pageable.getSort().isSorted() ? pageable.getSort().and(Sort.by("id")) : Sort.by("id");
+            ids = userRepository.findIds(UserSpecifications.buildUserSpecification(dateOfBirth, phone, name, email),
+                    sort, pageable.getOffset(), pageable.getPageSize() + 1);
+        }
+        boolean hasNext = ids.size() > pageable.getPageSize();
+        List<UserDto> users = readUsers(hasNext ? ids.subList(0, pageable.getPageSize()) : ids, indexed);
+        return new SliceImpl<>(users, pageable, hasNext);
+    }
+
+    /**
+     * Reads the users in the order of {@code ids}. Ids that came from the search index but no longer exist are
+     * dropped from the index.
+     */
+    private List<UserDto> readUsers(List<Long> ids, boolean indexed) {
+        List<UserDto> users = userReadRepository.findAllByIds(ids, this::toAccountDto);
+        if (indexed && users.size() < ids.size()) {
+            Set<Long> found = users.stream().map(UserDto::getId).collect(Collectors.toSet());
+            userSearchIndex.removeUsers(ids.stream().filter(id -> !found.contains(id)).toList());
+        }
+        return users;
+    }
+
+    /**
+     * Resolves the displayed balance of an account read by {@link UserReadRepository} the same way as for loaded accounts.
+     */
+    private AccountDto toAccountDto(Account account, BigDecimal stripedBalance) {
+        return new AccountDto(account.getId(), accountBalanceResolver.totalBalance(account, stripedBalance));
     }
-    @Caching(
-            evict = {
-                    @CacheEvict(allEntries = true, cacheNames = {"users", "userDetails"}),
-                    @CacheEvict(key = "#result.id", cacheNames = "userDetails")
+
+    private UserSearchResultDto findAfter(LocalDate dateOfBirth, String phone, String name, String email, UserSortOrder order,
+                                          String after, int size) {
+        UserKeyset keyset = StringUtils.hasText(after) ? UserKeyset.decode(after) : null;
+        UserSortOrder sortOrder = keyset != null ? keyset.getOrder() : order;
+        int limit = Math.max(size, 1);
+        List<Long> ids;
+        boolean indexed = userSearchIndex.isReady();
+        if (indexed) {
+            ids = userSearchIndex.findIdsAfter(dateOfBirth, phone, name, email, sortOrder, keyset, limit + 1);
+        } else {
+            Specification<User> specification = UserSpecifications.buildUserSpecification(dateOfBirth, phone, name, email);
+            if (keyset != null) {
+                specification = specification.and(keyset.toSpecification());
             }
-    )
+            ids = userRepository.findIdsInKeysetOrder(specification, sortOrder, limit + 1);
+        }
+        String nextCursor = null;
+        List<UserDto> users = readUsers(ids.size() > limit ? ids.subList(0, limit) : ids, indexed);
+        if (ids.size() > limit && !users.isEmpty()) {
+            nextCursor = UserKeyset.after(sortOrder, users.get(users.size() - 1)).encode();
+        }
+        return new UserSearchResultDto(users, nextCursor);
+    }
+
+    /**
+     * Writes every user matching the filters to {@code out} as newline-delimited JSON, one {@link UserDto} per
+     * line. Users are read with their account and contacts through a single cursor of the fetch size and written
+     * as they arrive, so memory use does not depend on the number of matches.
+     */
+    @Transactional(readOnly = true)
+    public void exportUsers(LocalDate dateOfBirth, String phone, String name, String email, OutputStream out) {
+        userReadRepository.streamUsers(dateOfBirth, phone, name, email, exportFetchSize, this::toAccountDto, user -> writeUser(user, out));
+    }
+
+    private void writeUser(UserDto user, OutputStream out) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(user));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @CacheEvict(key = "#result.id", cacheNames = "userDetails")
     public UserDto addPhone(String phone, String token) {
         Long userId = Long.valueOf(jwtUtil.extractUserId(token));
         User user = userRepository.findUserById(userId).orElseThrow(() -> {
@@ -67,6 +240,8 @@ public class UserService {
         try {
             phoneDataRepository.save(phoneData);
             user.getPhones().add(phoneData);
+            userSearchIndex.updatePhone(userId, null, phone);
+            userCacheTags.invalidatePhone(userId, phone);
             log.info("Successfully added phone {} to user ID {}", phone, userId);
             return userMapper.toDto(user);
         } catch (Exception e) {
@@ -74,12 +249,7 @@ public class UserService {
             throw new DataPersistingException("Error saving phone", e);
         }
     }
-    @Caching(
-            evict = {
-                    @CacheEvict(allEntries = true, cacheNames = {"users", "userDetails"}),
-                    @CacheEvict(key = "#result.id", cacheNames = "userDetails")
-            }
-    )
+    @CacheEvict(key = "#result.id", cacheNames = "userDetails")
     public UserDto updatePhone(PhoneDataDto phoneDataDto, String token) {
         Long userId = Long.valueOf(jwtUtil.extractUserId(token));
         User user = userRepository.findUserById(userId).orElseThrow(() -> {
@@ -97,9 +267,12 @@ public class UserService {
             throw new AccessDeniedException("Access denied: cannot modify this phone");
         }
 
+        String oldPhone = phoneData.getPhone();
         phoneData.setPhone(phoneDataDto.getPhone());
         try {
             phoneDataRepository.save(phoneData);
+            userSearchIndex.updatePhone(userId, oldPhone, phoneDataDto.getPhone());
+            userCacheTags.invalidatePhone(userId, oldPhone, phoneDataDto.getPhone());
             log.info("Successfully updated phone ID {} for user ID {} to {}", phoneDataDto.getId(), userId, phoneDataDto.getPhone());
             return userMapper.toDto(user);
         } catch (Exception e) {
@@ -107,12 +280,7 @@ public class UserService {
             throw new DataPersistingException("Error updating phone", e);
         }
     }
-    @Caching(
-            evict = {
-                    @CacheEvict(allEntries = true, cacheNames = {"users", "userDetails"}),
-                    @CacheEvict(key = "#result.id", cacheNames = "userDetails")
-            }
-    )
+    @CacheEvict(key = "#result.id", cacheNames = "userDetails")
     public UserDto deletePhone(Long phoneId, String token) {
         Long userId = Long.valueOf(jwtUtil.extractUserId(token));
         User user = userRepository.findUserById(userId).orElseThrow(() -> {
@@ -133,6 +301,8 @@ public class UserService {
         try {
             phoneDataRepository.delete(phoneData);
             user.getPhones().remove(phoneData);
+            userSearchIndex.updatePhone(userId, phoneData.getPhone(), null);
+            userCacheTags.invalidatePhone(userId, phoneData.getPhone());
             log.info("Successfully deleted phone ID {} from user ID {}", phoneId, userId);
             return userMapper.toDto(user);
         } catch (Exception e) {
@@ -140,12 +310,7 @@ public class UserService {
             throw new DataPersistingException("Error deleting phone", e);
         }
     }
-    @Caching(
-            evict = {
-                    @CacheEvict(allEntries = true, cacheNames = {"users", "userDetails"}),
-                    @CacheEvict(key = "#result.id", cacheNames = "userDetails")
-            }
-    )
+    @CacheEvict(key = "#result.id", cacheNames = "userDetails")
     public UserDto addEmail(String email, String token) {
         Long userId = Long.valueOf(jwtUtil.extractUserId(token));
         User user = userRepository.findUserById(userId).orElseThrow(() -> {
@@ -160,6 +325,8 @@ public class UserService {
         try {
             emailDataRepository.save(emailData);
             user.getEmails().add(emailData);
+            userSearchIndex.updateEmail(userId, null, email);
+            userCacheTags.invalidateEmail(userId, email);
             log.info("Successfully added email {} to user ID {}", email, userId);
             return userMapper.toDto(user);
         } catch (Exception e) {
@@ -167,12 +334,7 @@ public class UserService {
             throw new DataPersistingException("Error saving email", e);
         }
     }
-    @Caching(
-            evict = {
-                    @CacheEvict(allEntries = true, cacheNames = {"users", "userDetails"}),
-                    @CacheEvict(key = "#result.id", cacheNames = "userDetails")
-            }
-    )
+    @CacheEvict(key = "#result.id", cacheNames = "userDetails")
     public UserDto updateEmail(EmailDataDto emailDataDto, String token) {
         Long userId = Long.valueOf(jwtUtil.extractUserId(token));
         User user = userRepository.findUserById(userId).orElseThrow(() -> {
@@ -190,9 +352,12 @@ public class UserService {
             throw new AccessDeniedException("Access denied: cannot modify this email");
         }
 
+        String oldEmail = emailData.getEmail();
         emailData.setEmail(emailDataDto.getEmail());
         try {
             emailDataRepository.save(emailData);
+            userSearchIndex.updateEmail(userId, oldEmail, emailDataDto.getEmail());
+            userCacheTags.invalidateEmail(userId, oldEmail, emailDataDto.getEmail());
             log.info("Successfully updated email ID {} for user ID {} to {}", emailDataDto.getId(), userId, emailDataDto.getEmail());
             return userMapper.toDto(user);
         } catch (Exception e) {
@@ -200,12 +365,7 @@ public class UserService {
             throw new DataPersistingException("Error updating email", e);
         }
     }
-    @Caching(
-            evict = {
-                    @CacheEvict(allEntries = true, cacheNames = {"users", "userDetails"}),
-                    @CacheEvict(key = "#result.id", cacheNames = "userDetails")
-            }
-    )
+    @CacheEvict(key = "#result.id", cacheNames = "userDetails")
     public UserDto deleteEmail(Long emailId, String token) {
         Long userId = Long.valueOf(jwtUtil.extractUserId(token));
         User user = userRepository.findUserById(userId).orElseThrow(() -> {
@@ -226,6 +386,8 @@ public class UserService {
         try {
             emailDataRepository.delete(emailData);
             user.getEmails().remove(emailData);
+            userSearchIndex.updateEmail(userId, emailData.getEmail(), null);
+            userCacheTags.invalidateEmail(userId, emailData.getEmail());
             log.info("Successfully deleted email ID {} from user ID {}", emailId, userId);
             return userMapper.toDto(user);
         } catch (Exception e) {
@@ -0,0 +1,50 @@
+package by.bank.batch;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IdRangePartitionerTest {
+
+    @Test
+    void splitsIdRangeIntoContiguousPartitions() {
+        Map<String, ExecutionContext> partitions = partitioner(1, 10).partition(3);
+
+        assertThat(bounds(partitions)).containsExactly(List.of(1L, 4L), List.of(5L, 8L), List.of(9L, 10L));
+    }
+
+    @Test
+    void createsNoMorePartitionsThanIds() {
+        Map<String, ExecutionContext> partitions = partitioner(7, 8).partition(4);
+
+        assertThat(bounds(partitions)).containsExactly(List.of(7L, 7L), List.of(8L, 8L));
+    }
+
+    @Test
+    void createsNoPartitionsWithoutAccounts() {
+        assertThat(partitioner(0, -1).partition(4)).isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static IdRangePartitioner partitioner(long minId, long maxId) {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), any(RowMapper.class))).thenReturn(new long[]{minId, maxId});
+        return new IdRangePartitioner(jdbcTemplate);
+    }
+
+    private static List<List<Long>> bounds(Map<String, ExecutionContext> partitions) {
+        return partitions.values().stream()
+                .map(context -> List.of(context.getLong("minId"), context.getLong("maxId")))
+                .toList();
+    }
+}
@@ -0,0 +1,45 @@
+package by.bank.cache;
+
+import by.bank.dto.entityDto.UserDto;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * Coarse timing of {@link CompactCacheSerializer} against JDK serialization on a typical cached page. Only logs
+ * the results and is not picked up by the default test run; run it with
+ * {@code mvn test -Dtest=CompactCacheSerializerBenchmark}.
+ */
+@Slf4j
+class CompactCacheSerializerBenchmark {
+    private static final int ITERATIONS = 5_000;
+    private final CompactCacheSerializer serializer = new CompactCacheSerializer(getClass().getClassLoader(), 1024);
+    private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer(getClass().getClassLoader());
+
+    @Test
+    void roundTripPageOfUsers() {
+        Slice<UserDto> slice = new SliceImpl<>(CompactCacheSerializerTest.users(50), PageRequest.of(0, 50), true);
+
+        long compactNanos = roundTrips(serializer, slice);
+        long jdkNanos = roundTrips(jdkSerializer, slice);
+
+        log.info("Page of 50 users: compact {} bytes, {} us per round trip; JDK {} bytes, {} us per round trip",
+                serializer.serialize(slice).length, compactNanos / ITERATIONS / 1000.0,
+                jdkSerializer.serialize(slice).length, jdkNanos / ITERATIONS / 1000.0);
+    }
+
+    private static long roundTrips(RedisSerializer<Object> serializer, Object value) {
+        for (int i = 0; i < ITERATIONS; i++) {
+            serializer.deserialize(serializer.serialize(value));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            serializer.deserialize(serializer.serialize(value));
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,63 @@
+package by.bank.cache;
+
+import by.bank.dto.UserSearchResultDto;
+import by.bank.dto.entityDto.AccountDto;
+import by.bank.dto.entityDto.EmailDataDto;
+import by.bank.dto.entityDto.PhoneDataDto;
+import by.bank.dto.entityDto.UserDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactCacheSerializerTest {
+    private final CompactCacheSerializer serializer = new CompactCacheSerializer(getClass().getClassLoader(), 1024);
+    private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer(getClass().getClassLoader());
+
+    @Test
+    void roundTripsSearchResults() {
+        Slice<UserDto> slice = new SliceImpl<>(users(20), PageRequest.of(2, 20, Sort.by(Sort.Order.desc("name").ignoreCase())), true);
+        UserSearchResultDto result = new UserSearchResultDto(users(3), null);
+
+        Slice<?> readSlice = (Slice<?>) serializer.deserialize(serializer.serialize(slice));
+        Object readResult = serializer.deserialize(serializer.serialize(result));
+
+        assertThat(readSlice.getContent()).isEqualTo(slice.getContent());
+        assertThat(readSlice.getPageable()).isEqualTo(slice.getPageable());
+        assertThat(readSlice.hasNext()).isTrue();
+        assertThat(readResult).isEqualTo(result);
+    }
+
+    @Test
+    void readsEntriesWrittenWithJdkSerialization() {
+        UserSearchResultDto result = new UserSearchResultDto(users(2), "cursor");
+
+        assertThat(serializer.deserialize(jdkSerializer.serialize(result))).isEqualTo(result);
+        assertThat(serializer.deserialize(serializer.serialize(List.of("other")))).isEqualTo(List.of("other"));
+    }
+
+    @Test
+    void isSmallerThanJdkSerialization() {
+        Slice<UserDto> slice = new SliceImpl<>(users(50), PageRequest.of(0, 50), true);
+
+        assertThat(serializer.serialize(slice).length).isLessThan(jdkSerializer.serialize(slice).length / 2);
+    }
+
+    static List<UserDto> users(int count) {
+        return LongStream.rangeClosed(1, count)
+                .mapToObj(id -> new UserDto(id, "User " + id, LocalDate.of(1990, 1, 1).plusDays(id),
+                        List.of(new EmailDataDto(id * 2, "user" + id + "@mail.com"), new EmailDataDto(id * 2 + 1, "user" + id + "@work.com")),
+                        new AccountDto(id, new BigDecimal("1234.56").add(BigDecimal.valueOf(id))),
+                        List.of(new PhoneDataDto(id * 2, "3752900000" + (id % 10)))))
+                .toList();
+    }
+}
@@ -0,0 +1,138 @@
+package by.bank.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TwoLevelCacheTest {
+    private final ConcurrentMapCacheManager remoteManager = new ConcurrentMapCacheManager("users", "userDetails");
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    private final TwoLevelCacheManager manager = new TwoLevelCacheManager(remoteManager, redisTemplate, 100, Duration.ofMinutes(1));
+    private Cache cache;
+    private Cache remote;
+
+    @BeforeEach
+    void setUp() {
+        cache = manager.getCache("users");
+        remote = remoteManager.getCache("users");
+    }
+
+    @Test
+    void get_servesLocalCopy_withoutAskingRemote() {
+        cache.put("key", "value");
+        remote.evict("key");
+
+        assertThat(cache.get("key", String.class)).isEqualTo("value");
+    }
+
+    @Test
+    void get_fallsBackToRemote_andKeepsALocalCopy() {
+        remote.put("key", "value");
+
+        assertThat(cache.get("key", String.class)).isEqualTo("value");
+        remote.evict("key");
+        assertThat(cache.get("key", String.class)).isEqualTo("value");
+    }
+
+    @Test
+    void evict_removesBothCopies_andBroadcasts() {
+        cache.put("key", "value");
+
+        cache.evict("key");
+
+        assertThat(cache.get("key")).isNull();
+        assertThat(remote.get("key")).isNull();
+        verify(redisTemplate).convertAndSend(TwoLevelCacheManager.CHANNEL, "users\nkey");
+    }
+
+    @Test
+    void clear_broadcastsTheCacheName() {
+        cache.clear();
+
+        verify(redisTemplate).convertAndSend(TwoLevelCacheManager.CHANNEL, "users");
+    }
+
+    @Test
+    void onMessage_evictsTheKeyLocally() {
+        cache.put("key", "value");
+        cache.put("other", "value");
+        remote.clear();
+
+        manager.onMessage(message("users\nkey"), null);
+
+        assertThat(cache.get("key")).isNull();
+        assertThat(cache.get("other")).isNotNull();
+    }
+
+    @Test
+    void onMessage_keepsSeparatorsInsideTheKey() {
+        cache.put("a\nb", "value");
+        remote.clear();
+
+        manager.onMessage(message("users\na\nb"), null);
+
+        assertThat(cache.get("a\nb")).isNull();
+    }
+
+    @Test
+    void onMessage_withoutKey_clearsTheCacheLocally() {
+        cache.put("key", "value");
+        Cache details = manager.getCache("userDetails");
+        details.put(1L, "user");
+        remote.clear();
+        remoteManager.getCache("userDetails").clear();
+
+        manager.onMessage(message("users"), null);
+
+        assertThat(cache.get("key")).isNull();
+        assertThat(details.get(1L)).isNotNull();
+    }
+
+    @Test
+    void onMessage_forUnknownCache_isIgnored() {
+        cache.put("key", "value");
+        remote.clear();
+
+        manager.onMessage(message("accounts\nkey"), null);
+
+        assertThat(cache.get("key")).isNotNull();
+    }
+
+    @Test
+    void resubscribing_clearsLocalCopies() {
+        cache.put("key", "value");
+        remote.clear();
+
+        manager.onChannelSubscribed(TwoLevelCacheManager.CHANNEL.getBytes(StandardCharsets.UTF_8), 1);
+
+        assertThat(cache.get("key")).isNull();
+    }
+
+    @Test
+    void failedPublish_clearsLocalCopies() {
+        cache.put("other", "value");
+        remote.clear();
+        when(redisTemplate.convertAndSend(anyString(), anyString())).thenThrow(new RedisConnectionFailureException("down"));
+
+        cache.evict("key");
+
+        assertThat(cache.get("other")).isNull();
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(TwoLevelCacheManager.CHANNEL.getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -2,6 +2,8 @@ package by.bank.service;
 
 import by.bank.config.JwtUtil;
 import by.bank.dto.TransferDto;
+import by.bank.dto.TransferResultDto;
+import by.bank.dto.TransferStatus;
 import by.bank.entity.Account;
 import by.bank.entity.User;
 import by.bank.exception.InsufficientFundsException;
@@ -24,16 +26,18 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 import javax.security.auth.login.AccountNotFoundException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatCode;
 
-@SpringBootTest
+@SpringBootTest(properties = {"bank.interest.mode=SET_BASED", "bank.interest.tick=86400000"})
 @Testcontainers
 class AccountServiceTest {
     @Autowired
@@ -48,6 +52,8 @@ class AccountServiceTest {
     private UserRepository userRepository;
     @Autowired
     private JwtUtil jwtUtil;
+    @Autowired
+    private TransferProcessor transferProcessor;
 
     @DynamicPropertySource
     static void configureProperties(DynamicPropertyRegistry registry) {
@@ -181,4 +187,81 @@ class AccountServiceTest {
         assertThat(refreshedAccount1.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(300));
         assertThat(refreshedAccount2.getBalance()).isEqualByComparingTo(account2.getBalance());
     }
-}
\ No newline at end of file
+
+    @Test
+    void transferBatch_appliesItemsInOrder_andReportsRejectedOnes() throws AccountNotFoundException {
+        List<TransferDto> transfers = List.of(
+                new TransferDto(user2.getId(), BigDecimal.valueOf(600)),
+                new TransferDto(user2.getId(), BigDecimal.valueOf(600)),
+                new TransferDto(-1L, BigDecimal.valueOf(10)),
+                new TransferDto(user2.getId(), BigDecimal.valueOf(400)));
+
+        List<TransferResultDto> results = accountService.transferBatch(transfers, jwtUtil.generateToken(user1.getId()));
+
+        assertThat(results.get(0).getStatus()).isEqualTo(TransferStatus.COMPLETED);
+        assertThat(results.get(1).getStatus()).isEqualTo(TransferStatus.INSUFFICIENT_FUNDS);
+        assertThat(results.get(2).getStatus()).isEqualTo(TransferStatus.ACCOUNT_NOT_FOUND);
+        assertThat(results.get(3).getStatus()).isEqualTo(TransferStatus.COMPLETED);
+
+        Account refreshedAccount1 = accountRepository.findById(account1.getId()).orElseThrow();
+        Account refreshedAccount2 = accountRepository.findById(account2.getId()).orElseThrow();
+
+        assertThat(refreshedAccount1.getBalance()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(refreshedAccount2.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(3000));
+    }
+
+    @Test
+    void conditionalAndLockedTransfers_inOppositeDirections_doNotDeadlock() throws Exception {
+        // Accounts created in reverse so that user id order and account id order disagree
+        User first = new User();
+        first.setName("first");
+        first.setPassword("123456783");
+        User second = new User();
+        second.setName("second");
+        second.setPassword("123456784");
+        userRepository.saveAll(List.of(first, second));
+        Account secondAccount = new Account();
+        secondAccount.setUser(second);
+        secondAccount.setBalance(BigDecimal.valueOf(1000));
+        secondAccount.setInitialBalance(BigDecimal.valueOf(1000));
+        Account firstAccount = new Account();
+        firstAccount.setUser(first);
+        firstAccount.setBalance(BigDecimal.valueOf(1000));
+        firstAccount.setInitialBalance(BigDecimal.valueOf(1000));
+        accountRepository.saveAll(List.of(secondAccount, firstAccount));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> transfers = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            transfers.add(executor.submit(() -> {
+                transferProcessor.transferConditionally(first.getId(), new TransferDto(second.getId(), BigDecimal.ONE));
+                return null;
+            }));
+            transfers.add(executor.submit(() -> {
+                transferProcessor.transferLocked(second.getId(), new TransferDto(first.getId(), BigDecimal.ONE));
+                return null;
+            }));
+        }
+        for (Future<?> transfer : transfers) {
+            transfer.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(accountRepository.findById(firstAccount.getId()).orElseThrow().getBalance()).isEqualByComparingTo(BigDecimal.valueOf(1000));
+        assertThat(accountRepository.findById(secondAccount.getId()).orElseThrow().getBalance()).isEqualByComparingTo(BigDecimal.valueOf(1000));
+    }
+
+    @Test
+    void updateBalances_accruesInterestUpToCap() {
+        account2.setBalance(BigDecimal.valueOf(4100));
+        accountRepository.save(account2);
+
+        accountService.updateBalances();
+
+        Account refreshedAccount1 = accountRepository.findById(account1.getId()).orElseThrow();
+        Account refreshedAccount2 = accountRepository.findById(account2.getId()).orElseThrow();
+
+        assertThat(refreshedAccount1.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(1100));
+        assertThat(refreshedAccount2.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(4140));
+    }
+}
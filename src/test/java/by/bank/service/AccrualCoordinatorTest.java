@@ -0,0 +1,148 @@
+package by.bank.service;
+
+import by.bank.entity.AccrualLease;
+import by.bank.repository.AccrualLeaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {"bank.interest.mode=SET_BASED", "bank.interest.tick=86400000", "bank.interest.cluster.partitions=3"})
+@Testcontainers
+class AccrualCoordinatorTest {
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+    @Autowired
+    private AccrualCoordinator accrualCoordinator;
+    @Autowired
+    private AccrualLeaseRepository accrualLeaseRepository;
+    @Value("${bank.interest.tick}")
+    private long tickMillis;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @BeforeEach
+    void setUp() {
+        // Drops the lease the scheduled tick claimed on startup
+        accrualLeaseRepository.deleteAll();
+    }
+
+    @Test
+    void tick_runsEveryPartitionOnce() {
+        List<String> runs = new ArrayList<>();
+
+        accrualCoordinator.runTick(true, true, (partition, partitions) -> runs.add(partition + "/" + partitions));
+        accrualCoordinator.runTick(true, true, (partition, partitions) -> runs.add(partition + "/" + partitions));
+
+        assertThat(runs).containsExactly("0/3", "1/3", "2/3");
+    }
+
+    @Test
+    void unpartitionedTask_runsOnceAsSinglePartition() {
+        List<String> runs = new ArrayList<>();
+
+        accrualCoordinator.runTick(false, true, (partition, partitions) -> runs.add(partition + "/" + partitions));
+
+        assertThat(runs).containsExactly("0/1");
+    }
+
+    @Test
+    void concurrentNodes_runEachPartitionOfTickOnce() throws Exception {
+        ConcurrentLinkedQueue<Integer> runs = new ConcurrentLinkedQueue<>();
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> nodes = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            nodes.add(executor.submit(() -> {
+                start.await();
+                accrualCoordinator.runTick(true, true, (partition, partitions) -> {
+                    runs.add(partition);
+                    sleep();
+                });
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> node : nodes) {
+            node.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(runs).containsExactlyInAnyOrder(0, 1, 2);
+    }
+
+    @Test
+    void failedPartition_isRunAgainWithinTheTick() {
+        List<Integer> runs = new ArrayList<>();
+
+        assertThatThrownBy(() -> accrualCoordinator.runTick(true, true, (partition, partitions) -> {
+            runs.add(partition);
+            if (partition == 1) {
+                throw new IllegalStateException("accrual failed");
+            }
+        })).isInstanceOf(IllegalStateException.class);
+        accrualCoordinator.runTick(true, true, (partition, partitions) -> runs.add(partition));
+
+        assertThat(runs).containsExactly(0, 1, 1, 2);
+    }
+
+    @Test
+    void failedPartition_ofTaskCommittingInParts_keepsItsTick() {
+        List<Integer> runs = new ArrayList<>();
+
+        assertThatThrownBy(() -> accrualCoordinator.runTick(false, false, (partition, partitions) -> {
+            runs.add(partition);
+            throw new IllegalStateException("accrual failed");
+        })).isInstanceOf(IllegalStateException.class);
+        accrualCoordinator.runTick(false, false, (partition, partitions) -> runs.add(partition));
+
+        assertThat(runs).containsExactly(0);
+    }
+
+    @Test
+    void leaseOfEarlierTick_isTakenOver_butLaterTickIsNot() {
+        long tick = System.currentTimeMillis() / tickMillis;
+        accrualLeaseRepository.saveAll(List.of(
+                new AccrualLease(0, tick - 1, "stopped-node", Instant.now()),
+                new AccrualLease(1, tick + 1, "other-node", Instant.now())));
+        List<Integer> runs = new ArrayList<>();
+
+        accrualCoordinator.runTick(true, true, (partition, partitions) -> runs.add(partition));
+
+        assertThat(runs).containsExactly(0, 2);
+        assertThat(accrualLeaseRepository.findById(0).orElseThrow().getLastTick()).isEqualTo(tick);
+        assertThat(accrualLeaseRepository.findById(1).orElseThrow().getHolder()).isEqualTo("other-node");
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(200);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
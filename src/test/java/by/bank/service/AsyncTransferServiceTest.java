@@ -0,0 +1,163 @@
+package by.bank.service;
+
+import by.bank.config.JwtUtil;
+import by.bank.dto.AsyncTransferDto;
+import by.bank.dto.TransferDto;
+import by.bank.dto.TransferStatus;
+import by.bank.entity.Account;
+import by.bank.entity.User;
+import by.bank.exception.ResourceNotFoundException;
+import by.bank.repository.AccountRepository;
+import by.bank.repository.AsyncTransferRepository;
+import by.bank.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@Testcontainers
+class AsyncTransferServiceTest {
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+    @Autowired
+    private AsyncTransferService asyncTransferService;
+    @Autowired
+    private AsyncTransferRepository asyncTransferRepository;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    private User sender;
+    private User receiver;
+    private Account senderAccount;
+    private String token;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @BeforeEach
+    void setUp() {
+        sender = user("sender");
+        receiver = user("receiver");
+        userRepository.saveAll(List.of(sender, receiver));
+        senderAccount = account(sender, 1000);
+        accountRepository.saveAll(List.of(senderAccount, account(receiver, 1000)));
+        token = jwtUtil.generateToken(sender.getId());
+    }
+
+    @AfterEach
+    void tearDown() {
+        asyncTransferRepository.deleteAll();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void submittedTransfer_isStoredAndCompleted() throws InterruptedException {
+        AsyncTransferDto accepted = asyncTransferService.submit(new TransferDto(receiver.getId(), BigDecimal.valueOf(100)), token);
+
+        assertThat(accepted.getStatus()).isEqualTo(TransferStatus.QUEUED);
+        assertThat(awaitFinished(accepted.getId()).getStatus()).isEqualTo(TransferStatus.COMPLETED);
+        assertThat(senderBalance()).isEqualByComparingTo(BigDecimal.valueOf(900));
+    }
+
+    @Test
+    void rejectedTransfer_recordsOutcome() throws InterruptedException {
+        AsyncTransferDto accepted = asyncTransferService.submit(new TransferDto(receiver.getId(), BigDecimal.valueOf(5000)), token);
+
+        assertThat(awaitFinished(accepted.getId()).getStatus()).isEqualTo(TransferStatus.INSUFFICIENT_FUNDS);
+        assertThat(senderBalance()).isEqualByComparingTo(BigDecimal.valueOf(1000));
+    }
+
+    @Test
+    void transferLeftQueuedByStoppedNode_isRecovered() throws InterruptedException {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("""
+                INSERT INTO async_transfer (id, user_id, transfer_to, amount, status, updated_at)
+                VALUES (?, ?, ?, 100, 'QUEUED', now() - INTERVAL '1 hour')
+                """, id, sender.getId(), receiver.getId());
+
+        asyncTransferService.recover();
+
+        assertThat(awaitFinished(id).getStatus()).isEqualTo(TransferStatus.COMPLETED);
+        assertThat(senderBalance()).isEqualByComparingTo(BigDecimal.valueOf(900));
+    }
+
+    @Test
+    void transferLeftProcessingByStoppedNode_isMarkedFailed() {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("""
+                INSERT INTO async_transfer (id, user_id, transfer_to, amount, status, updated_at)
+                VALUES (?, ?, ?, 100, 'PROCESSING', now() - INTERVAL '1 day')
+                """, id, sender.getId(), receiver.getId());
+
+        asyncTransferService.recover();
+
+        assertThat(asyncTransferService.getTransfer(id, token).getStatus()).isEqualTo(TransferStatus.FAILED);
+    }
+
+    @Test
+    void transferOfAnotherUser_isNotFound() throws InterruptedException {
+        AsyncTransferDto accepted = asyncTransferService.submit(new TransferDto(receiver.getId(), BigDecimal.valueOf(100)), token);
+        awaitFinished(accepted.getId());
+
+        assertThatThrownBy(() -> asyncTransferService.getTransfer(accepted.getId(), jwtUtil.generateToken(receiver.getId())))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    private AsyncTransferDto awaitFinished(UUID id) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            AsyncTransferDto transfer = asyncTransferService.getTransfer(id, token);
+            if (transfer.getStatus() != TransferStatus.QUEUED && transfer.getStatus() != TransferStatus.PROCESSING) {
+                return transfer;
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("Transfer " + id + " did not finish");
+    }
+
+    private BigDecimal senderBalance() {
+        return accountRepository.findById(senderAccount.getId()).orElseThrow().getBalance();
+    }
+
+    private static User user(String name) {
+        User user = new User();
+        user.setName(name);
+        user.setDateOfBirth(LocalDate.of(1990, 1, 1));
+        user.setPassword("password");
+        return user;
+    }
+
+    private static Account account(User user, long balance) {
+        Account account = new Account();
+        account.setUser(user);
+        account.setBalance(BigDecimal.valueOf(balance));
+        account.setInitialBalance(BigDecimal.valueOf(balance));
+        return account;
+    }
+}
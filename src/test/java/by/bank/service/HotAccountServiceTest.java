@@ -0,0 +1,188 @@
+package by.bank.service;
+
+import by.bank.dto.TransferDto;
+import by.bank.dto.entityDto.UserDto;
+import by.bank.entity.Account;
+import by.bank.entity.User;
+import by.bank.exception.InsufficientFundsException;
+import by.bank.mapper.AccountBalanceResolver;
+import by.bank.repository.AccountRepository;
+import by.bank.repository.AccountStripeRepository;
+import by.bank.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.security.auth.login.AccountNotFoundException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Testcontainers
+class HotAccountServiceTest {
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+    @Autowired
+    private HotAccountService hotAccountService;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private TransferProcessor transferProcessor;
+    @Autowired
+    private AccountBalanceResolver accountBalanceResolver;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private AccountStripeRepository accountStripeRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private UserService userService;
+
+    private User payer;
+    private User hot;
+    private Account payerAccount;
+    private Account hotAccount;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @BeforeEach
+    void setUp() {
+        payer = user("payer");
+        hot = user("hot");
+        userRepository.saveAll(List.of(payer, hot));
+        payerAccount = account(payer, 1000);
+        hotAccount = account(hot, 0);
+        accountRepository.saveAll(List.of(payerAccount, hotAccount));
+        ReflectionTestUtils.setField(hotAccountService, "hotUserIds", List.of(hot.getId()));
+        hotAccountService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        accountStripeRepository.deleteAll();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void creditsToHotAccount_landOnStripes_untilConsolidated() throws AccountNotFoundException {
+        for (int i = 0; i < 10; i++) {
+            accountService.transfer(payer.getId(), new TransferDto(hot.getId(), BigDecimal.TEN));
+        }
+
+        assertThat(hotAccountService.isStriped(hotAccount.getId())).isTrue();
+        assertThat(balance(hotAccount)).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(hotAccountService.stripedBalance(hotAccount.getId())).isEqualByComparingTo(BigDecimal.valueOf(100));
+        assertThat(accountBalanceResolver.totalBalance(reload(hotAccount))).isEqualByComparingTo(BigDecimal.valueOf(100));
+
+        hotAccountService.consolidate();
+
+        assertThat(balance(hotAccount)).isEqualByComparingTo(BigDecimal.valueOf(100));
+        assertThat(hotAccountService.stripedBalance(hotAccount.getId())).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(accountBalanceResolver.totalBalance(reload(hotAccount))).isEqualByComparingTo(BigDecimal.valueOf(100));
+        assertThat(balance(payerAccount)).isEqualByComparingTo(BigDecimal.valueOf(900));
+    }
+
+    @Test
+    void searchResults_showUnconsolidatedStripes() throws AccountNotFoundException {
+        accountService.transfer(payer.getId(), new TransferDto(hot.getId(), BigDecimal.valueOf(70)));
+
+        List<UserDto> users = userService.searchUsers(null, null, "hot", null, PageRequest.of(0, 10)).getContent();
+
+        assertThat(users).singleElement()
+                .satisfies(user -> assertThat(user.getAccount().getBalance()).isEqualByComparingTo(BigDecimal.valueOf(70)));
+    }
+
+    @Test
+    void debitsFromHotAccount_spendStripes_inEveryMode() throws AccountNotFoundException {
+        accountService.transfer(payer.getId(), new TransferDto(hot.getId(), BigDecimal.valueOf(100)));
+
+        transferProcessor.transferConditionally(hot.getId(), new TransferDto(payer.getId(), BigDecimal.valueOf(40)));
+        transferProcessor.transferOptimistic(hot.getId(), new TransferDto(payer.getId(), BigDecimal.valueOf(60)));
+
+        assertThat(accountBalanceResolver.totalBalance(reload(hotAccount))).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(balance(payerAccount)).isEqualByComparingTo(BigDecimal.valueOf(1000));
+    }
+
+    @Test
+    void concurrentDebitsFromHotAccount_spendOnlyWhatStripesHold() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            accountService.transfer(payer.getId(), new TransferDto(hot.getId(), BigDecimal.TEN));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                accountService.transfer(hot.getId(), new TransferDto(payer.getId(), BigDecimal.TEN));
+                return null;
+            }));
+        }
+        start.countDown();
+
+        int completed = 0;
+        for (Future<?> result : results) {
+            try {
+                result.get(30, TimeUnit.SECONDS);
+                completed++;
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(InsufficientFundsException.class);
+            }
+        }
+        executor.shutdown();
+
+        assertThat(completed).isEqualTo(10);
+        assertThat(accountBalanceResolver.totalBalance(reload(hotAccount))).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(balance(payerAccount)).isEqualByComparingTo(BigDecimal.valueOf(1000));
+    }
+
+    private Account reload(Account account) {
+        return accountRepository.findById(account.getId()).orElseThrow();
+    }
+
+    private BigDecimal balance(Account account) {
+        return reload(account).getBalance();
+    }
+
+    private static User user(String name) {
+        User user = new User();
+        user.setName(name);
+        user.setDateOfBirth(LocalDate.of(1990, 1, 1));
+        user.setPassword("password");
+        return user;
+    }
+
+    private static Account account(User user, long balance) {
+        Account account = new Account();
+        account.setUser(user);
+        account.setBalance(BigDecimal.valueOf(balance));
+        account.setInitialBalance(BigDecimal.valueOf(balance));
+        return account;
+    }
+}
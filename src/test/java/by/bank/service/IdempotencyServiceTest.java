@@ -0,0 +1,237 @@
+package by.bank.service;
+
+import by.bank.config.JwtUtil;
+import by.bank.config.TransferMode;
+import by.bank.dto.IdempotentResponse;
+import by.bank.dto.TransferDto;
+import by.bank.entity.Account;
+import by.bank.entity.User;
+import by.bank.exception.IdempotencyConflictException;
+import by.bank.repository.AccountRepository;
+import by.bank.repository.IdempotencyRecordRepository;
+import by.bank.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.security.auth.login.AccountNotFoundException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@Testcontainers
+class IdempotencyServiceTest {
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JwtUtil jwtUtil;
+    @Autowired
+    private IdempotencyService idempotencyService;
+    @Autowired
+    private TransferProcessor transferProcessor;
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    private User sender;
+    private User receiver;
+    private Account senderAccount;
+    private String token;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.data.redis.host", redis::getHost);
+        registry.add("spring.data.redis.port", () -> redis.getMappedPort(6379));
+    }
+
+    @BeforeEach
+    void setUp() {
+        sender = user("sender");
+        receiver = user("receiver");
+        userRepository.saveAll(List.of(sender, receiver));
+        senderAccount = account(sender, 1000);
+        accountRepository.saveAll(List.of(senderAccount, account(receiver, 1000)));
+        token = jwtUtil.generateToken(sender.getId());
+    }
+
+    @AfterEach
+    void tearDown() {
+        idempotencyRecordRepository.deleteAll();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void repeatedRequest_replaysStoredOutcome_andTransfersOnce() throws AccountNotFoundException {
+        String key = UUID.randomUUID().toString();
+        TransferDto dto = new TransferDto(receiver.getId(), BigDecimal.valueOf(100));
+
+        IdempotentResponse first = accountService.transfer(dto, token, key);
+        IdempotentResponse second = accountService.transfer(dto, token, key);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(senderBalance()).isEqualByComparingTo(BigDecimal.valueOf(900));
+    }
+
+    @Test
+    void repeatedRejectedRequest_replaysRejection() throws AccountNotFoundException {
+        String key = UUID.randomUUID().toString();
+        TransferDto dto = new TransferDto(receiver.getId(), BigDecimal.valueOf(5000));
+
+        IdempotentResponse first = accountService.transfer(dto, token, key);
+        accountRepository.findById(senderAccount.getId()).ifPresent(account -> {
+            account.setBalance(BigDecimal.valueOf(10000));
+            accountRepository.save(account);
+        });
+        IdempotentResponse second = accountService.transfer(dto, token, key);
+
+        assertThat(first.getStatus()).isEqualTo(422);
+        assertThat(second).isEqualTo(first);
+        assertThat(senderBalance()).isEqualByComparingTo(BigDecimal.valueOf(10000));
+    }
+
+    @Test
+    void keyReusedForDifferentRequest_isRejected() throws AccountNotFoundException {
+        String key = UUID.randomUUID().toString();
+        accountService.transfer(new TransferDto(receiver.getId(), BigDecimal.valueOf(100)), token, key);
+
+        assertThatThrownBy(() -> accountService.transfer(new TransferDto(receiver.getId(), BigDecimal.valueOf(200)), token, key))
+                .isInstanceOf(IdempotencyConflictException.class);
+        assertThat(senderBalance()).isEqualByComparingTo(BigDecimal.valueOf(900));
+    }
+
+    @Test
+    void concurrentDuplicates_executeOnce() throws Exception {
+        String key = UUID.randomUUID().toString();
+        TransferDto dto = new TransferDto(receiver.getId(), BigDecimal.valueOf(100));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<IdempotentResponse>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return accountService.transfer(dto, token, key);
+            }));
+        }
+        start.countDown();
+
+        int completed = 0;
+        for (Future<IdempotentResponse> result : results) {
+            try {
+                assertThat(result.get(30, TimeUnit.SECONDS).getStatus()).isEqualTo(200);
+                completed++;
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(IdempotencyConflictException.class);
+            }
+        }
+        executor.shutdown();
+
+        assertThat(completed).isPositive();
+        assertThat(senderBalance()).isEqualByComparingTo(BigDecimal.valueOf(900));
+    }
+
+    @Test
+    void failedRequest_releasesKey() {
+        String key = UUID.randomUUID().toString();
+        TransferDto dto = new TransferDto(-1L, BigDecimal.valueOf(100));
+
+        assertThatThrownBy(() -> accountService.transfer(dto, token, key)).isInstanceOf(AccountNotFoundException.class);
+        assertThatThrownBy(() -> accountService.transfer(dto, token, key)).isInstanceOf(AccountNotFoundException.class);
+    }
+
+    @Test
+    void lostRedisOutcome_isReplayedFromPostgres_andTransfersOnce() throws AccountNotFoundException {
+        String key = UUID.randomUUID().toString();
+        TransferDto dto = new TransferDto(receiver.getId(), BigDecimal.valueOf(100));
+
+        IdempotentResponse first = accountService.transfer(dto, token, key);
+        redisTemplate.delete("idempotency:transfer:" + sender.getId() + ":" + key);
+        IdempotentResponse second = accountService.transfer(dto, token, key);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(senderBalance()).isEqualByComparingTo(BigDecimal.valueOf(900));
+        assertThat(redisTemplate.opsForValue().get("idempotency:transfer:" + sender.getId() + ":" + key)).startsWith("DONE:");
+    }
+
+    @Test
+    void duplicateExecution_rollsBackOnTheRecordedKey() throws AccountNotFoundException {
+        String key = UUID.randomUUID().toString();
+        TransferDto dto = new TransferDto(receiver.getId(), BigDecimal.valueOf(100));
+        accountService.transfer(dto, token, key);
+
+        // A duplicate that got past the expired Redis claim before the first execution had recorded its outcome
+        assertThatThrownBy(() -> transferProcessor.transfer(TransferMode.LOCK_ORDERED, sender.getId(), dto,
+                () -> idempotencyService.record("transfer:" + sender.getId(), key, receiver.getId() + "/100", new IdempotentResponse(200, ""))))
+                .isInstanceOf(DataIntegrityViolationException.class);
+
+        assertThat(senderBalance()).isEqualByComparingTo(BigDecimal.valueOf(900));
+    }
+
+    @Test
+    void release_keepsAClaimTakenOverByAnotherRequest() {
+        String key = UUID.randomUUID().toString();
+        idempotencyService.begin("test", key, "mine");
+        redisTemplate.opsForValue().set("idempotency:test:" + key, "PENDING:theirs");
+
+        idempotencyService.release("test", key, "mine");
+        assertThat(redisTemplate.opsForValue().get("idempotency:test:" + key)).isEqualTo("PENDING:theirs");
+
+        idempotencyService.release("test", key, "theirs");
+        assertThat(redisTemplate.hasKey("idempotency:test:" + key)).isFalse();
+    }
+
+    private BigDecimal senderBalance() {
+        return accountRepository.findById(senderAccount.getId()).orElseThrow().getBalance();
+    }
+
+    private static User user(String name) {
+        User user = new User();
+        user.setName(name);
+        user.setDateOfBirth(LocalDate.of(1990, 1, 1));
+        user.setPassword("password");
+        return user;
+    }
+
+    private static Account account(User user, long balance) {
+        Account account = new Account();
+        account.setUser(user);
+        account.setBalance(BigDecimal.valueOf(balance));
+        account.setInitialBalance(BigDecimal.valueOf(balance));
+        return account;
+    }
+}
@@ -0,0 +1,206 @@
+package by.bank.service;
+
+import by.bank.config.AccrualMode;
+import by.bank.dto.TransferDto;
+import by.bank.entity.Account;
+import by.bank.entity.User;
+import by.bank.repository.AccountRepository;
+import by.bank.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.security.auth.login.AccountNotFoundException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs {@link AccountService#updateBalances()} in every scheduled accrual mode; all of them must agree.
+ * In {@link AccrualMode#LAZY} accounts accrue when a transfer touches them instead.
+ */
+@SpringBootTest(properties = {"bank.interest.mode=SET_BASED", "bank.interest.tick=86400000", "bank.interest.batch.threads=2", "bank.interest.batch.chunk-size=3",
+        "bank.interest.chunked.chunk-size=3"})
+@Testcontainers
+class InterestAccrualTest {
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private LazyInterestService lazyInterestService;
+    @Autowired
+    private TransferProcessor transferProcessor;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ChunkedAccrualService chunkedAccrualService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final List<Account> accounts = new ArrayList<>();
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @BeforeEach
+    void setUp() {
+        // Enough accounts for several partitions and chunks in BATCH_JOB mode
+        for (int i = 0; i < 10; i++) {
+            User user = new User();
+            user.setName("accrual" + i);
+            user.setDateOfBirth(LocalDate.of(1990, 1, 1));
+            user.setPassword("password");
+            userRepository.save(user);
+            Account account = new Account();
+            account.setUser(user);
+            account.setBalance(BigDecimal.valueOf(1000));
+            account.setInitialBalance(BigDecimal.valueOf(1000));
+            accounts.add(account);
+        }
+        // Close to the cap of 207% of the initial balance
+        accounts.get(0).setBalance(BigDecimal.valueOf(2050));
+        accountRepository.saveAll(accounts);
+    }
+
+    @AfterEach
+    void tearDown() {
+        setMode(AccrualMode.SET_BASED);
+        accounts.clear();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = AccrualMode.class, names = {"ENTITY_LOOP", "SET_BASED", "BATCH_JOB", "CHUNKED"})
+    void updateBalances_accruesEveryAccountOnce_upToCap(AccrualMode mode) {
+        setMode(mode);
+
+        accountService.updateBalances();
+
+        assertThat(balance(accounts.get(0))).isEqualByComparingTo(BigDecimal.valueOf(2070));
+        for (Account account : accounts.subList(1, accounts.size())) {
+            assertThat(balance(account)).isEqualByComparingTo(BigDecimal.valueOf(1100));
+        }
+
+        accountService.updateBalances();
+
+        assertThat(balance(accounts.get(0))).isEqualByComparingTo(BigDecimal.valueOf(2070));
+        assertThat(balance(accounts.get(1))).isEqualByComparingTo(BigDecimal.valueOf(1210));
+    }
+
+    @Test
+    void lazyMode_accruesElapsedPeriods_whenTransferTouchesAccount() throws AccountNotFoundException {
+        setMode(AccrualMode.LAZY);
+        Account sender = accounts.get(1);
+        Account receiver = accounts.get(2);
+        jdbcTemplate.update("UPDATE account SET last_accrued_at = now() - INTERVAL '75 seconds' WHERE id = ?", sender.getId());
+
+        accountService.updateBalances();
+        assertThat(balance(sender)).isEqualByComparingTo(BigDecimal.valueOf(1000));
+
+        transferProcessor.transferLocked(sender.getUser().getId(), new TransferDto(receiver.getUser().getId(), BigDecimal.valueOf(100)));
+
+        assertThat(balance(sender)).isEqualByComparingTo(BigDecimal.valueOf(1110));
+        assertThat(balance(receiver)).isEqualByComparingTo(BigDecimal.valueOf(1100));
+    }
+
+    @Test
+    void lazyMode_accruesElapsedPeriods_onConditionalTransfer() throws AccountNotFoundException {
+        setMode(AccrualMode.LAZY);
+        Account sender = accounts.get(1);
+        Account receiver = accounts.get(2);
+        jdbcTemplate.update("UPDATE account SET last_accrued_at = now() - INTERVAL '75 seconds' WHERE id = ?", sender.getId());
+
+        transferProcessor.transferConditionally(sender.getUser().getId(), new TransferDto(receiver.getUser().getId(), BigDecimal.valueOf(100)));
+
+        assertThat(balance(sender)).isEqualByComparingTo(BigDecimal.valueOf(1110));
+        assertThat(balance(receiver)).isEqualByComparingTo(BigDecimal.valueOf(1100));
+    }
+
+    @Test
+    void chunkedAccrual_skipsLockedRows_andAccruesThemOnceReleased() throws Exception {
+        Account locked = accounts.get(3);
+        Account other = accounts.get(accounts.size() - 1);
+        CountDownLatch lockAcquired = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Boolean> othersAccruedWhileLocked = executor.submit(() -> transactionTemplate.execute(status -> {
+            jdbcTemplate.queryForObject("SELECT id FROM account WHERE id = ? FOR UPDATE", Long.class, locked.getId());
+            lockAcquired.countDown();
+            // Holds the lock until the other accounts have accrued, which would never happen if accrual waited for it
+            for (int i = 0; i < 100; i++) {
+                BigDecimal balance = jdbcTemplate.queryForObject("SELECT balance FROM account WHERE id = ?", BigDecimal.class, other.getId());
+                if (balance.compareTo(BigDecimal.valueOf(1100)) == 0) {
+                    return true;
+                }
+                sleep();
+            }
+            return false;
+        }));
+        lockAcquired.await();
+
+        chunkedAccrualService.accrue(0, 1);
+
+        assertThat(othersAccruedWhileLocked.get(30, TimeUnit.SECONDS)).isTrue();
+        executor.shutdown();
+        assertThat(balance(locked)).isEqualByComparingTo(BigDecimal.valueOf(1100));
+        assertThat(balance(other)).isEqualByComparingTo(BigDecimal.valueOf(1100));
+    }
+
+    @Test
+    void chunkedAccrual_partitionsCoverEveryAccountOnce() {
+        chunkedAccrualService.accrue(0, 2);
+        chunkedAccrualService.accrue(1, 2);
+
+        assertThat(balance(accounts.get(0))).isEqualByComparingTo(BigDecimal.valueOf(2070));
+        for (Account account : accounts.subList(1, accounts.size())) {
+            assertThat(balance(account)).isEqualByComparingTo(BigDecimal.valueOf(1100));
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void setMode(AccrualMode mode) {
+        ReflectionTestUtils.setField(AopTestUtils.getTargetObject(accountService), "accrualMode", mode);
+        ReflectionTestUtils.setField(AopTestUtils.getTargetObject(lazyInterestService), "accrualMode", mode);
+    }
+
+    private BigDecimal balance(Account account) {
+        return accountRepository.findById(account.getId()).orElseThrow().getBalance();
+    }
+}
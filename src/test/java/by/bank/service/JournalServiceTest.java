@@ -0,0 +1,153 @@
+package by.bank.service;
+
+import by.bank.dto.TransferDto;
+import by.bank.entity.Account;
+import by.bank.entity.JournalEntry;
+import by.bank.entity.User;
+import by.bank.repository.AccountRepository;
+import by.bank.repository.BalanceSnapshotRepository;
+import by.bank.repository.JournalEntryRepository;
+import by.bank.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.security.auth.login.AccountNotFoundException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "bank.journal.snapshot-lag=0s")
+@Testcontainers
+class JournalServiceTest {
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+    @Autowired
+    private JournalService journalService;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JournalEntryRepository journalEntryRepository;
+    @Autowired
+    private BalanceSnapshotRepository balanceSnapshotRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User sender;
+    private User receiver;
+    private Account senderAccount;
+    private Account receiverAccount;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @BeforeEach
+    void setUp() {
+        sender = user("sender");
+        receiver = user("receiver");
+        userRepository.saveAll(List.of(sender, receiver));
+        senderAccount = account(sender, 1000);
+        receiverAccount = account(receiver, 1000);
+        accountRepository.saveAll(List.of(senderAccount, receiverAccount));
+    }
+
+    @AfterEach
+    void tearDown() {
+        balanceSnapshotRepository.deleteAll();
+        journalEntryRepository.deleteAll();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void journaledTransfers_doNotDrift_beforeOrAfterSnapshot() throws AccountNotFoundException {
+        accountService.transfer(sender.getId(), new TransferDto(receiver.getId(), BigDecimal.valueOf(100)));
+        assertThat(journalService.findDriftedAccounts()).isEmpty();
+
+        journalService.snapshotBalances();
+        accountService.transfer(receiver.getId(), new TransferDto(sender.getId(), BigDecimal.valueOf(30)));
+
+        assertThat(journalService.findDriftedAccounts()).isEmpty();
+        assertThat(balanceSnapshotRepository.findById(senderAccount.getId()).orElseThrow().getBalance())
+                .isEqualByComparingTo(BigDecimal.valueOf(900));
+    }
+
+    @Test
+    void balanceAccruedBeforeJournaling_isOpened_andNotReportedAsDrift() {
+        jdbcTemplate.update("UPDATE account SET balance = 1100 WHERE id = ?", senderAccount.getId());
+        assertThat(journalService.findDriftedAccounts()).containsExactly(senderAccount.getId());
+
+        journalService.openJournal();
+        journalService.snapshotBalances();
+        journalService.rebuildBalance(senderAccount.getId());
+
+        assertThat(journalService.findDriftedAccounts()).isEmpty();
+        assertThat(balance(senderAccount)).isEqualByComparingTo(BigDecimal.valueOf(1100));
+    }
+
+    @Test
+    void unjournaledChange_isReportedAsDrift_andRebuiltFromJournal() throws AccountNotFoundException {
+        journalService.openJournal();
+        accountService.transfer(sender.getId(), new TransferDto(receiver.getId(), BigDecimal.valueOf(100)));
+        jdbcTemplate.update("UPDATE account SET balance = balance + 5 WHERE id = ?", receiverAccount.getId());
+
+        assertThat(journalService.findDriftedAccounts()).containsExactly(receiverAccount.getId());
+
+        journalService.rebuildBalance(receiverAccount.getId());
+
+        assertThat(journalService.findDriftedAccounts()).isEmpty();
+        assertThat(balance(receiverAccount)).isEqualByComparingTo(BigDecimal.valueOf(1100));
+    }
+
+    @Test
+    void journalEntries_useDatabaseTransactionTime() {
+        Integer stamped = transactionTemplate.execute(status -> {
+            journalService.record(List.of(JournalEntry.interest(senderAccount.getId(), BigDecimal.ONE)));
+            journalEntryRepository.flush();
+            return jdbcTemplate.queryForObject("SELECT count(*) FROM transfer_journal WHERE created_at = now()", Integer.class);
+        });
+
+        assertThat(stamped).isEqualTo(1);
+    }
+
+    private BigDecimal balance(Account account) {
+        return accountRepository.findById(account.getId()).orElseThrow().getBalance();
+    }
+
+    private static User user(String name) {
+        User user = new User();
+        user.setName(name);
+        user.setDateOfBirth(LocalDate.of(1990, 1, 1));
+        user.setPassword("password");
+        return user;
+    }
+
+    private static Account account(User user, long balance) {
+        Account account = new Account();
+        account.setUser(user);
+        account.setBalance(BigDecimal.valueOf(balance));
+        account.setInitialBalance(BigDecimal.valueOf(balance));
+        return account;
+    }
+}
@@ -0,0 +1,110 @@
+package by.bank.service;
+
+import by.bank.config.AccrualMode;
+import by.bank.entity.Account;
+import by.bank.entity.JournalEntry;
+import by.bank.mapper.AccountBalanceResolver;
+import by.bank.repository.AccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class LazyInterestServiceTest {
+    private static final Duration PERIOD = Duration.ofSeconds(30);
+    private final AccountRepository accountRepository = mock(AccountRepository.class);
+    private final JournalService journalService = mock(JournalService.class);
+    private final LazyInterestService lazyInterestService = new LazyInterestService(accountRepository, journalService);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(lazyInterestService, "accrualMode", AccrualMode.LAZY);
+        ReflectionTestUtils.setField(lazyInterestService, "period", PERIOD);
+    }
+
+    @Test
+    void effectiveBalance_includesElapsedPeriods_withoutPersisting() {
+        Account account = account(1000, 1000, Instant.now().minus(PERIOD.multipliedBy(5).dividedBy(2)));
+
+        assertThat(lazyInterestService.effectiveBalance(account)).isEqualByComparingTo("1210.00");
+        assertThat(account.getBalance()).isEqualByComparingTo("1000");
+        verifyNoInteractions(accountRepository, journalService);
+    }
+
+    @Test
+    void effectiveBalance_stopsAtCap() {
+        Account account = account(1000, 1000, Instant.now().minus(PERIOD.multipliedBy(50)));
+
+        assertThat(lazyInterestService.effectiveBalance(account)).isEqualByComparingTo("2070.00");
+    }
+
+    @Test
+    void effectiveBalance_isStoredBalance_inOtherModes() {
+        ReflectionTestUtils.setField(lazyInterestService, "accrualMode", AccrualMode.SET_BASED);
+        Account account = account(1000, 1000, Instant.now().minus(PERIOD.multipliedBy(5)));
+
+        assertThat(lazyInterestService.effectiveBalance(account)).isEqualByComparingTo("1000");
+    }
+
+    @Test
+    void totalBalance_addsStripesAfterInterest_onBothReadPaths() {
+        HotAccountService hotAccountService = mock(HotAccountService.class);
+        AccountBalanceResolver resolver = new AccountBalanceResolver(hotAccountService, lazyInterestService);
+        Account account = account(1000, 1000, Instant.now().minus(PERIOD.multipliedBy(5).dividedBy(2)));
+        account.setId(1L);
+        when(hotAccountService.isStriped(1L)).thenReturn(true);
+        when(hotAccountService.stripedBalance(1L)).thenReturn(BigDecimal.valueOf(500));
+
+        assertThat(resolver.totalBalance(account)).isEqualByComparingTo("1710.00");
+        assertThat(resolver.totalBalance(account, BigDecimal.valueOf(500))).isEqualByComparingTo("1710.00");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void accrue_appliesWholePeriods_keepsRemainder_andJournalsInterest() {
+        Instant lastAccruedAt = Instant.now().minus(PERIOD.multipliedBy(5).dividedBy(2)).truncatedTo(ChronoUnit.MILLIS);
+        Account account = account(1000, 1000, lastAccruedAt);
+
+        lazyInterestService.accrue(List.of(account));
+
+        assertThat(account.getBalance()).isEqualByComparingTo("1210.00");
+        assertThat(account.getLastAccruedAt()).isEqualTo(lastAccruedAt.plus(PERIOD.multipliedBy(2)));
+        ArgumentCaptor<List<JournalEntry>> entries = ArgumentCaptor.forClass(List.class);
+        verify(journalService).record(entries.capture());
+        assertThat(entries.getValue()).singleElement()
+                .satisfies(entry -> assertThat(entry.getAmount()).isEqualByComparingTo("210.00"));
+    }
+
+    @Test
+    void accrue_startsClock_forAccountsWithoutOne() {
+        Account account = account(1000, 1000, null);
+
+        lazyInterestService.accrue(List.of(account));
+
+        assertThat(account.getBalance()).isEqualByComparingTo("1000");
+        assertThat(account.getLastAccruedAt()).isNotNull();
+        verify(journalService, never()).record(anyList());
+    }
+
+    private static Account account(long balance, long initialBalance, Instant lastAccruedAt) {
+        Account account = new Account();
+        account.setBalance(BigDecimal.valueOf(balance));
+        account.setInitialBalance(BigDecimal.valueOf(initialBalance));
+        account.setLastAccruedAt(lastAccruedAt);
+        return account;
+    }
+}
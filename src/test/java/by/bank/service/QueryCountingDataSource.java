@@ -0,0 +1,52 @@
+package by.bank.service;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Counts the statements created on the current thread, whether through Hibernate or plain JDBC, so that
+ * tests are not affected by scheduled jobs running concurrently.
+ */
+public class QueryCountingDataSource extends DelegatingDataSource {
+    private static final ThreadLocal<Integer> COUNT = ThreadLocal.withInitial(() -> 0);
+
+    public QueryCountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    public static void reset() {
+        COUNT.set(0);
+    }
+
+    public static int count() {
+        return COUNT.get();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return counting(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return counting(super.getConnection(username, password));
+    }
+
+    private static Connection counting(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            if (method.getName().equals("prepareStatement") || method.getName().equals("createStatement")) {
+                COUNT.set(COUNT.get() + 1);
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        });
+    }
+}
@@ -0,0 +1,156 @@
+package by.bank.service;
+
+import by.bank.dto.entityDto.UserDto;
+import by.bank.entity.Account;
+import by.bank.entity.PhoneData;
+import by.bank.entity.User;
+import by.bank.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Testcontainers
+class UserCacheTagsTest {
+    private static final PageRequest CACHED_PAGE = PageRequest.of(0, 20);
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserCacheTags userCacheTags;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    private User alice;
+    private User bob;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.data.redis.host", redis::getHost);
+        registry.add("spring.data.redis.port", () -> redis.getMappedPort(6379));
+    }
+
+    @BeforeEach
+    void setUp() {
+        alice = user("alice", "375290000001");
+        bob = user("bob", "375290000002");
+        userRepository.saveAll(List.of(alice, bob));
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+        searchCache().clear();
+        redisTemplate.delete(Objects.requireNonNull(redisTemplate.keys("users:tag:*")));
+    }
+
+    @Test
+    void searchKey_keepsPartsApart() {
+        assertThat(UserCacheTags.searchKey("page", "a|b", "c")).isNotEqualTo(UserCacheTags.searchKey("page", "a", "b|c"));
+        assertThat(UserCacheTags.searchKey("page", null, "x")).isNotEqualTo(UserCacheTags.searchKey("page", "null", "x"));
+        assertThat(UserCacheTags.searchKey("page", "1:2")).isNotEqualTo(UserCacheTags.searchKey("page", "1", "2"));
+    }
+
+    @Test
+    void contactChange_evictsOnlySearchesItAffects() {
+        String aliceKey = searchByName("alice");
+        String bobKey = searchByName("bob");
+
+        userCacheTags.invalidatePhone(alice.getId(), "375290000001", "375290000009");
+
+        assertThat(searchCache().get(aliceKey)).isNull();
+        assertThat(searchCache().get(bobKey)).isNotNull();
+    }
+
+    @Test
+    void contactChange_evictsSearchesFilteredOnTheOldOrNewContact() {
+        userService.searchUsers(null, "375290000009", null, null, CACHED_PAGE);
+        String key = UserCacheTags.searchKey("page", null, "375290000009", null, null, 0, CACHED_PAGE.getPageSize());
+        assertThat(searchCache().get(key)).isNotNull();
+
+        userCacheTags.invalidatePhone(bob.getId(), "375290000002", "375290000009");
+
+        assertThat(searchCache().get(key)).isNull();
+    }
+
+    @Test
+    void tagSets_expireWithTheEntries() {
+        searchByName("alice");
+
+        Long ttl = redisTemplate.getExpire("users:tag:user:" + alice.getId());
+
+        assertThat(ttl).isPositive();
+    }
+
+    @Test
+    void cached_dropsEntry_whenContactsChangeDuringTheSearch() {
+        String key = UserCacheTags.searchKey("test", "alice");
+
+        List<Long> result = userCacheTags.cached(key, () -> {
+            // Stands for a phone change committed after the search read alice's contacts
+            userCacheTags.invalidatePhone(alice.getId(), "375290000001");
+            return List.of(alice.getId());
+        }, ids -> ids, null, null);
+
+        assertThat(result).containsExactly(alice.getId());
+        assertThat(searchCache().get(key)).isNull();
+    }
+
+    private String searchByName(String name) {
+        List<UserDto> users = userService.searchUsers(null, null, name, null, CACHED_PAGE).getContent();
+        assertThat(users).extracting(UserDto::getName).containsExactly(name);
+        String key = UserCacheTags.searchKey("page", null, null, name, null, 0, CACHED_PAGE.getPageSize());
+        assertThat(searchCache().get(key)).isNotNull();
+        return key;
+    }
+
+    private Cache searchCache() {
+        return Objects.requireNonNull(cacheManager.getCache(UserCacheTags.SEARCH_CACHE));
+    }
+
+    private static User user(String name, String phoneNumber) {
+        User user = new User();
+        user.setName(name);
+        user.setDateOfBirth(LocalDate.of(1990, 1, 1));
+        user.setPassword("password");
+        Account account = new Account();
+        account.setUser(user);
+        account.setBalance(BigDecimal.valueOf(100));
+        account.setInitialBalance(BigDecimal.valueOf(100));
+        user.setAccount(account);
+        PhoneData phone = new PhoneData();
+        phone.setPhone(phoneNumber);
+        phone.setUser(user);
+        user.getPhones().add(phone);
+        return user;
+    }
+}
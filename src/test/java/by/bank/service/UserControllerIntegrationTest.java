@@ -18,6 +18,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.testcontainers.containers.PostgreSQLContainer;
@@ -27,13 +28,18 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 import javax.security.auth.login.AccountNotFoundException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -198,5 +204,29 @@ class UserControllerIntegrationTest {
         });
     }
 
+    @Test
+    void exportUsers_streamsMatchingUsersAsNdjson() throws Exception {
+        MvcResult started = mockMvc.perform(get("/users/export")
+                        .param("name", "test")
+                        .cookie(new Cookie("JWT", authToken)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        MvcResult result = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn();
+
+        List<Long> ids = new ArrayList<>();
+        for (String line : result.getResponse().getContentAsString().split("\n")) {
+            ids.add(objectMapper.readTree(line).get("id").asLong());
+        }
+        assertThat(ids).isEqualTo(List.of(user1.getId(), user2.getId()));
+    }
 
+    @Test
+    void exportUsers_withoutToken_isRejected() throws Exception {
+        mockMvc.perform(get("/users/export"))
+                .andExpect(status().is4xxClientError());
+    }
 }
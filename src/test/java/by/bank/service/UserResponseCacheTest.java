@@ -0,0 +1,166 @@
+package by.bank.service;
+
+import by.bank.config.JwtUtil;
+import by.bank.dto.UserSearchQuery;
+import by.bank.dto.UserSortOrder;
+import by.bank.entity.Account;
+import by.bank.entity.User;
+import by.bank.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Testcontainers
+class UserResponseCacheTest {
+    private static final int USERS = 15;
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JwtUtil jwtUtil;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    private String token;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.data.redis.host", redis::getHost);
+        registry.add("spring.data.redis.port", () -> redis.getMappedPort(6379));
+        registry.add("bank.search.response-cache", () -> true);
+    }
+
+    @BeforeEach
+    void setUp() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(user(String.format("cached%02d", i)));
+        }
+        userRepository.saveAll(users);
+        token = jwtUtil.generateToken(users.get(0).getId());
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+        Objects.requireNonNull(cacheManager.getCache(UserCacheTags.SEARCH_CACHE)).clear();
+        redisTemplate.delete(Objects.requireNonNull(redisTemplate.keys("users:tag:*")));
+    }
+
+    @Test
+    void getUsers_returnsThePageWithAnEtag() throws Exception {
+        MvcResult result = mockMvc.perform(users().param("size", "12"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().string("X-Has-Next", "true"))
+                .andReturn();
+
+        JsonNode users = objectMapper.readTree(result.getResponse().getContentAsString());
+        assertThat(users.size()).isEqualTo(12);
+        assertThat(users.get(0).get("name").asText()).isEqualTo("cached00");
+    }
+
+    @Test
+    void getUsers_withMatchingIfNoneMatch_isNotModified() throws Exception {
+        String etag = mockMvc.perform(users().param("size", "20"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        MvcResult result = mockMvc.perform(users().param("size", "20").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andReturn();
+
+        assertThat(result.getResponse().getContentAsByteArray()).isEmpty();
+        mockMvc.perform(users().param("size", "20").header(HttpHeaders.IF_NONE_MATCH, "\"0stale\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void equivalentRequests_shareOneEntry() throws Exception {
+        String offset = mockMvc.perform(users().param("size", "20"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String offsetIgnoringOrder = mockMvc.perform(users().param("size", "20").param("orderBy", "DATE_OF_BIRTH"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(users().param("size", "20").param("after", ""));
+        mockMvc.perform(users().param("size", "20").param("after", "").param("page", "3"));
+
+        assertThat(offsetIgnoringOrder).isEqualTo(offset);
+        assertThat(redisTemplate.keys(UserCacheTags.SEARCH_CACHE + "::*")).hasSize(2);
+    }
+
+    @Test
+    void query_dropsParametersThatDoNotAffectTheResult() {
+        assertThat(UserSearchQuery.of(null, null, "a", null, 1, 20, null, UserSortOrder.DATE_OF_BIRTH))
+                .isEqualTo(UserSearchQuery.of(null, null, "a", null, 1, 20, null, UserSortOrder.NAME));
+        assertThat(UserSearchQuery.of(null, null, "a", null, 5, 20, "", UserSortOrder.NAME))
+                .isEqualTo(UserSearchQuery.of(null, null, "a", null, 0, 20, "", UserSortOrder.NAME));
+        assertThat(UserSearchQuery.of(null, null, "a", null, 0, 20, "cursor", UserSortOrder.NAME))
+                .isEqualTo(UserSearchQuery.of(null, null, "a", null, 0, 20, "cursor", UserSortOrder.DATE_OF_BIRTH));
+        assertThat(UserSearchQuery.of(null, null, "a", null, 0, 20, "", UserSortOrder.NAME))
+                .isNotEqualTo(UserSearchQuery.of(null, null, "a", null, 0, 20, "", UserSortOrder.DATE_OF_BIRTH));
+    }
+
+    private MockHttpServletRequestBuilder users() {
+        return get("/users").param("name", "cached").cookie(new Cookie("JWT", token));
+    }
+
+    private static User user(String name) {
+        User user = new User();
+        user.setName(name);
+        user.setDateOfBirth(LocalDate.of(1990, 1, 1));
+        user.setPassword("password");
+        Account account = new Account();
+        account.setUser(user);
+        account.setBalance(BigDecimal.valueOf(100));
+        account.setInitialBalance(BigDecimal.valueOf(100));
+        user.setAccount(account);
+        return user;
+    }
+}
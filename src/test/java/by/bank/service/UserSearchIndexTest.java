@@ -0,0 +1,185 @@
+package by.bank.service;
+
+import by.bank.dto.UserSortOrder;
+import by.bank.repository.specification.UserKeyset;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserSearchIndexTest {
+    private static final String GRINNING = new String(Character.toChars(0x1F600));
+    private final Map<String, List<Map<String, Object>>> tables = new HashMap<>();
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    private final UserSearchIndex index = new UserSearchIndex(new TableJdbcTemplate(), redisTemplate);
+
+    @BeforeEach
+    void setUp() {
+        // Delivers published updates straight back, as the subscription does for the publishing node
+        when(redisTemplate.convertAndSend(eq(UserSearchIndex.CHANNEL), anyString())).thenAnswer(invocation -> {
+            index.onMessage(message(invocation.getArgument(1)), null);
+            return 1L;
+        });
+        user(1L, "Bob", LocalDate.of(1990, 1, 1));
+        user(2L, "Anna" + GRINNING, LocalDate.of(1991, 1, 1));
+        user(3L, "Anna", LocalDate.of(1985, 1, 1));
+        user(4L, "Anna\uFFFD", null);
+        user(5L, "Ann", LocalDate.of(2000, 1, 1));
+        user(6L, "anna", LocalDate.of(1995, 1, 1));
+        user(7L, null, LocalDate.of(1993, 1, 1));
+        contact("phone_data", "phone", "375290000002", 2L);
+        ReflectionTestUtils.setField(index, "enabled", true);
+        index.rebuild();
+    }
+
+    @Test
+    void namesCompareByCodePoint_notByUtf16Unit() {
+        assertThat(UserSearchIndex.compareCodePoints(GRINNING, "\uFFFD")).isPositive();
+        assertThat(GRINNING.compareTo("\uFFFD")).isNegative();
+        assertThat(UserSearchIndex.compareCodePoints("Ann", "Anna")).isNegative();
+        assertThat(UserSearchIndex.compareCodePoints("Anna", "Anna")).isZero();
+    }
+
+    @Test
+    void namePrefix_coversNamesContinuingBeyondTheBmp() {
+        List<Long> ids = index.findIdsAfter(null, null, "Anna", null, UserSortOrder.NAME, null, 10);
+
+        assertThat(ids).containsExactly(3L, 4L, 2L);
+    }
+
+    @Test
+    void nameKeysetPages_neitherSkipNorRepeat() {
+        List<Long> seen = new ArrayList<>();
+        UserKeyset after = null;
+        List<Long> page;
+        while (!(page = index.findIdsAfter(null, null, null, null, UserSortOrder.NAME, after, 2)).isEmpty()) {
+            seen.addAll(page);
+            Long last = page.get(page.size() - 1);
+            after = new UserKeyset(UserSortOrder.NAME, name(last), last);
+        }
+
+        assertThat(seen).containsExactly(5L, 3L, 4L, 2L, 1L, 6L, 7L);
+    }
+
+    @Test
+    void dateOfBirthKeyset_startsAfterFilter_andKeepsNullsLast() {
+        List<Long> ids = index.findIdsAfter(LocalDate.of(1990, 1, 1), null, null, null, UserSortOrder.DATE_OF_BIRTH, null, 10);
+
+        assertThat(ids).containsExactly(2L, 7L, 6L, 5L);
+    }
+
+    @Test
+    void offsetPages_withNamePrefix_areOrderedById() {
+        assertThat(index.findIds(null, null, "Ann", null, 0, 10)).containsExactly(2L, 3L, 4L, 5L);
+        assertThat(index.findIds(null, null, "Ann", null, 1, 2)).containsExactly(3L, 4L);
+        assertThat(index.findIds(null, null, null, null, 5, 10)).containsExactly(6L, 7L);
+    }
+
+    @Test
+    void contactLookup_appliesOtherFilters() {
+        assertThat(index.findIds(null, "375290000002", "Anna", null, 0, 10)).containsExactly(2L);
+        assertThat(index.findIds(null, "375290000002", "Bob", null, 0, 10)).isEmpty();
+    }
+
+    @Test
+    void newUsers_areAdded_andRemovedUsersDropped() {
+        user(8L, "Annabel", LocalDate.of(1999, 1, 1));
+        contact("email_data", "email", "annabel@mail.com", 8L);
+
+        index.addNewUsers();
+        index.removeUsers(List.of(3L));
+
+        assertThat(index.findIdsAfter(null, null, "Anna", null, UserSortOrder.NAME, null, 10)).containsExactly(8L, 4L, 2L);
+        assertThat(index.findIds(null, null, null, "annabel@mail.com", 0, 10)).containsExactly(8L);
+    }
+
+    @Test
+    void contactUpdates_fromAnyNode_areApplied() {
+        index.onMessage(message("phone\n3\n\n375290000003"), null);
+        index.updatePhone(2L, "375290000002", "375290000022");
+        index.updateEmail(5L, null, "ann@mail.com");
+
+        assertThat(index.findIds(null, "375290000003", null, null, 0, 10)).containsExactly(3L);
+        assertThat(index.findIds(null, "375290000002", null, null, 0, 10)).isEmpty();
+        assertThat(index.findIds(null, "375290000022", null, null, 0, 10)).containsExactly(2L);
+        assertThat(index.findIds(null, null, null, "ann@mail.com", 0, 10)).containsExactly(5L);
+    }
+
+    @Test
+    void updates_areAppliedLocally_whenTheyCannotBePublished() {
+        when(redisTemplate.convertAndSend(eq(UserSearchIndex.CHANNEL), anyString())).thenThrow(new RedisConnectionFailureException("down"));
+
+        index.removeUsers(List.of(1L, 6L));
+        index.updateEmail(1L, null, "bob@mail.com");
+
+        assertThat(index.findIds(null, null, null, null, 0, 10)).containsExactly(2L, 3L, 4L, 5L, 7L);
+        assertThat(index.findIds(null, null, null, "bob@mail.com", 0, 10)).isEmpty();
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(UserSearchIndex.CHANNEL.getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void user(Long id, String name, LocalDate dateOfBirth) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("name", name);
+        row.put("date_of_birth", dateOfBirth == null ? null : Date.valueOf(dateOfBirth));
+        tables.computeIfAbsent("users", table -> new ArrayList<>()).add(row);
+    }
+
+    private void contact(String table, String column, String value, Long userId) {
+        tables.computeIfAbsent(table, name -> new ArrayList<>()).add(Map.of(column, value, "user_id", userId));
+    }
+
+    private String name(Long id) {
+        return (String) tables.get("users").stream().filter(row -> row.get("id").equals(id)).findFirst().orElseThrow().get("name");
+    }
+
+    /**
+     * Answers the index's {@code SELECT ... FROM <table> WHERE <id> > ?} queries from {@link #tables}.
+     */
+    private class TableJdbcTemplate extends JdbcTemplate {
+        @Override
+        public void query(String sql, RowCallbackHandler rch, Object... args) {
+            String table = sql.substring(sql.indexOf(" FROM ") + 6).split(" ")[0];
+            String idColumn = table.equals("users") ? "id" : "user_id";
+            try {
+                for (Map<String, Object> row : tables.getOrDefault(table, List.of())) {
+                    if ((Long) row.get(idColumn) > (Long) args[0]) {
+                        rch.processRow(resultSet(row));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private ResultSet resultSet(Map<String, Object> row) {
+            return mock(ResultSet.class, invocation -> {
+                Object value = row.get((String) invocation.getArgument(0));
+                return invocation.getMethod().getName().equals("getLong") ? (value == null ? 0L : value) : value;
+            });
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package by.bank.service;
+
+import by.bank.dto.UserSearchResultDto;
+import by.bank.dto.UserSortOrder;
+import by.bank.dto.entityDto.UserDto;
+import by.bank.entity.Account;
+import by.bank.entity.EmailData;
+import by.bank.entity.PhoneData;
+import by.bank.entity.User;
+import by.bank.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Testcontainers
+class UserServiceTest {
+    private static final int USERS = 30;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @TestConfiguration
+    static class QueryCountingConfig {
+        @Bean
+        static BeanPostProcessor queryCountingDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource && !(bean instanceof QueryCountingDataSource)
+                            ? new QueryCountingDataSource(dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("bank.export.fetch-size", () -> 4);
+    }
+
+    @BeforeEach
+    void setUp() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setName("user" + i);
+            user.setDateOfBirth(LocalDate.of(1990, 1, 1).plusDays(i));
+            user.setPassword("password" + i);
+
+            Account account = new Account();
+            account.setUser(user);
+            account.setBalance(BigDecimal.valueOf(100));
+            account.setInitialBalance(BigDecimal.valueOf(100));
+            user.setAccount(account);
+
+            for (int j = 0; j < 2; j++) {
+                EmailData email = new EmailData();
+                email.setEmail("user" + i + "." + j + "@mail.com");
+                email.setUser(user);
+                user.getEmails().add(email);
+
+                PhoneData phone = new PhoneData();
+                phone.setPhone(String.format("3752900%02d%02d", i, j));
+                phone.setUser(user);
+                user.getPhones().add(phone);
+            }
+            users.add(user);
+        }
+        userRepository.saveAll(users);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void searchUsers_loadsPageWithConstantNumberOfQueries() {
+        QueryCountingDataSource.reset();
+
+        Slice<UserDto> slice = userService.searchUsers(null, null, null, null, PageRequest.of(1, 10));
+        List<UserDto> users = slice.getContent();
+
+        assertThat(QueryCountingDataSource.count()).isLessThanOrEqualTo(4);
+        assertThat(users).hasSize(10);
+        assertThat(slice.hasNext()).isTrue();
+        assertThat(users).allSatisfy(user -> {
+            assertThat(user.getAccount()).isNotNull();
+            assertThat(user.getEmails()).hasSize(2);
+            assertThat(user.getPhones()).hasSize(2);
+        });
+    }
+
+    @Test
+    void searchUsersAfter_loadsPageWithConstantNumberOfQueries() {
+        QueryCountingDataSource.reset();
+
+        UserSearchResultDto result = userService.searchUsersAfter(null, null, null, null, UserSortOrder.NAME, "", 10);
+
+        assertThat(QueryCountingDataSource.count()).isLessThanOrEqualTo(4);
+        assertThat(result.getUsers()).hasSize(10);
+        assertThat(result.getNextCursor()).isNotNull();
+        assertThat(result.getUsers()).allSatisfy(user -> assertThat(user.getPhones()).hasSize(2));
+    }
+
+    @Test
+    void searchUsers_matchesNameWildcardsLiterally_andReturnsUserWithSeveralPhonesOnce() {
+        User literal = userWithPhones("50%_off", "375330000001", "375330000002");
+        User lookalike = userWithPhones("500_off", "375330000003");
+        userRepository.saveAll(List.of(literal, lookalike));
+
+        List<UserDto> byName = userService.searchUsers(null, null, "50%_", null, PageRequest.of(0, 10)).getContent();
+        List<UserDto> byPhone = userService.searchUsers(null, "375330000002", null, null, PageRequest.of(0, 10)).getContent();
+        List<UserDto> byWildcard = userService.searchUsers(null, null, "50_", null, PageRequest.of(0, 10)).getContent();
+        UserSearchResultDto byNameAfter = userService.searchUsersAfter(null, "375330000001", "50%", null, UserSortOrder.NAME, "", 10);
+
+        assertThat(byName).extracting(UserDto::getName).containsExactly("50%_off");
+        assertThat(byPhone).singleElement().satisfies(user -> assertThat(user.getPhones()).hasSize(2));
+        assertThat(byWildcard).isEmpty();
+        assertThat(byNameAfter.getUsers()).extracting(UserDto::getName).containsExactly("50%_off");
+    }
+
+    @Test
+    void searchUsersAfter_ordersNamesByCodePoint_likeTheSearchIndex() {
+        userRepository.saveAll(List.of(userWithPhones("alpha"), userWithPhones("Zed")));
+
+        List<String> names = new ArrayList<>();
+        String after = "";
+        do {
+            UserSearchResultDto result = userService.searchUsersAfter(null, null, null, null, UserSortOrder.NAME, after, 7);
+            result.getUsers().forEach(user -> names.add(user.getName()));
+            after = result.getNextCursor();
+        } while (after != null);
+
+        assertThat(names).hasSize(USERS + 2).doesNotHaveDuplicates();
+        assertThat(names.subList(0, 2)).containsExactly("Zed", "alpha");
+    }
+
+    @Test
+    void exportUsers_writesTheSameUsersAsSearch() throws Exception {
+        LocalDate bornAfter = LocalDate.of(1990, 1, 5);
+
+        List<JsonNode> exported = export(bornAfter, null, "user1", null);
+        List<UserDto> searched = userService.searchUsers(bornAfter, null, "user1", null, PageRequest.of(0, 10)).getContent();
+
+        assertThat(exported).hasSize(10);
+        assertThat(exported).extracting(user -> user.get("id").asLong()).isSorted()
+                .containsExactlyInAnyOrderElementsOf(searched.stream().map(UserDto::getId).toList());
+        assertThat(exported).allSatisfy(user -> {
+            assertThat(user.get("name").asText()).startsWith("user1");
+            assertThat(user.get("account").isNull()).isFalse();
+        });
+    }
+
+    @Test
+    void exportUsers_appliesContactFilters_andMatchesNamesLiterally() throws Exception {
+        assertThat(export(null, "37529000701", null, null)).extracting(user -> user.get("name").asText()).containsExactly("user7");
+        assertThat(export(null, null, "user2", "user21.0@mail.com")).extracting(user -> user.get("name").asText()).containsExactly("user21");
+        assertThat(export(null, null, "user_", null)).isEmpty();
+    }
+
+    private List<JsonNode> export(LocalDate dateOfBirth, String phone, String name, String email) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        userService.exportUsers(dateOfBirth, phone, name, email, out);
+        List<JsonNode> exported = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) {
+                exported.add(objectMapper.readTree(line));
+            }
+        }
+        return exported;
+    }
+
+    private static User userWithPhones(String name, String... phones) {
+        User user = new User();
+        user.setName(name);
+        user.setDateOfBirth(LocalDate.of(1980, 1, 1));
+        user.setPassword("password");
+        Account account = new Account();
+        account.setUser(user);
+        account.setBalance(BigDecimal.valueOf(100));
+        account.setInitialBalance(BigDecimal.valueOf(100));
+        user.setAccount(account);
+        for (String number : phones) {
+            PhoneData phone = new PhoneData();
+            phone.setPhone(number);
+            phone.setUser(user);
+            user.getPhones().add(phone);
+        }
+        return user;
+    }
+}